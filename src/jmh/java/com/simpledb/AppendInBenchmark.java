@@ -0,0 +1,55 @@
+package com.simpledb;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * 큰 IN 목록을 다루는 appendIn과 인자값 바인딩 비용 벤치마크
+ * <p>
+ * 실행 : ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AppendInBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int inSize;
+
+    private SimpleDb simpleDb;
+    private Object[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        simpleDb = BenchmarkDb.create(1000);
+        ids = IntStream.rangeClosed(1, inSize).boxed().toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDb.drop(simpleDb);
+    }
+
+    /**
+     * appendIn : placeholder 목록을 만드는 비용 (실행하지 않음)
+     */
+    @Benchmark
+    public Sql appendIn() {
+        return simpleDb.genSql()
+                .append("SELECT COUNT(*) FROM article")
+                .appendIn("WHERE `id` IN (?)", ids);
+    }
+
+    /**
+     * setObjectsToStatement : IN 목록 크기만큼 인자값을 바인딩하고 실행하는 비용
+     */
+    @Benchmark
+    public Long bindParameters() {
+        return simpleDb.genSql()
+                .append("SELECT COUNT(*) FROM article")
+                .appendIn("WHERE `id` IN (?)", ids)
+                .selectLong();
+    }
+}
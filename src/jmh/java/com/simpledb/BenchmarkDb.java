@@ -0,0 +1,41 @@
+package com.simpledb;
+
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 벤치마크용 SimpleDb. MySQL 대신 내장 H2(MySQL 모드) 메모리 DB에 article 테이블을 만든다
+ */
+final class BenchmarkDb {
+
+    private BenchmarkDb() {
+    }
+
+    static SimpleDb create(final int rowCount) {
+        final SimpleDb simpleDb = new SimpleDb("bench",
+                () -> DriverManager.getConnection("jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1"));
+
+        simpleDb.run("DROP TABLE IF EXISTS article");
+        simpleDb.run("""
+                CREATE TABLE article (
+                    `id` BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                    `title` VARCHAR(100) NOT NULL,
+                    `body` TEXT NOT NULL,
+                    `isBlind` BOOLEAN NOT NULL DEFAULT FALSE
+                )
+                """);
+
+        final List<Object[]> batchParams = new ArrayList<>();
+        for (int no = 1; no <= rowCount; no++) {
+            batchParams.add(new Object[]{"제목%d".formatted(no), "내용%d".formatted(no), no > rowCount / 2});
+        }
+        simpleDb.runBatch("INSERT INTO article (`title`, `body`, `isBlind`) VALUES (?, ?, ?)", batchParams);
+        return simpleDb;
+    }
+
+    static void drop(final SimpleDb simpleDb) {
+        simpleDb.run("DROP TABLE article");
+        simpleDb.shutdown();
+    }
+}
@@ -0,0 +1,109 @@
+package com.simpledb;
+
+import com.simpledb.Entity.Article;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sql의 조회 결과 변환과 SimpleDb.run의 커넥션 처리 비용 벤치마크
+ * <p>
+ * 네트워크 영향 없이 반복 측정할 수 있도록 MySQL 대신 내장 H2 메모리 DB를 사용한다.
+ * 실행 : ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SqlBenchmark {
+
+    private static final SqlTemplate FIND_BY_ID = SqlTemplate.of("SELECT `id`, `title`, `body` FROM article WHERE `id` = :id");
+
+    @Param({"1000"})
+    private int rowCount;
+
+    private SimpleDb simpleDb;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        simpleDb = BenchmarkDb.create(rowCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDb.drop(simpleDb);
+    }
+
+    /**
+     * selectRows(Class) : row를 entity로 변환하는 비용
+     */
+    @Benchmark
+    public List<Article> selectRowsEntity() {
+        return simpleDb.genSql()
+                .append("SELECT `id`, `title`, `body` FROM article")
+                .selectRows(Article.class);
+    }
+
+    /**
+     * selectRows() : row를 Map으로 만드는 비용
+     */
+    @Benchmark
+    public List<Map<String, Object>> selectRowsMap() {
+        return simpleDb.genSql()
+                .append("SELECT * FROM article")
+                .selectRows();
+    }
+
+    /**
+     * 단건 조회 : append로 SQL문을 만들고 setObject로 바인딩
+     */
+    @Benchmark
+    public Article selectRowAppend() {
+        return simpleDb.genSql()
+                .append("SELECT `id`, `title`, `body` FROM article WHERE `id` = ?", 1L)
+                .selectRow(Article.class);
+    }
+
+    /**
+     * 단건 조회 : 미리 해석한 템플릿과 타입별 setter로 바인딩
+     */
+    @Benchmark
+    public Article selectRowTemplate() {
+        return simpleDb.genSql(FIND_BY_ID)
+                .setLong("id", 1L)
+                .selectRow(Article.class);
+    }
+
+    /**
+     * 짧은 SELECT문 세 개를 따로 실행
+     */
+    @Benchmark
+    public long selectSequential() {
+        return simpleDb.genSql().append("SELECT COUNT(*) FROM article").selectLong()
+                + simpleDb.genSql().append("SELECT MAX(`id`) FROM article").selectLong()
+                + simpleDb.genSql().append("SELECT MIN(`id`) FROM article").selectLong();
+    }
+
+    /**
+     * 같은 SELECT문 세 개를 pipeline으로 실행. H2에서는 한 요청으로 합치지 않고 커넥션 하나에서 차례로 실행된다
+     */
+    @Benchmark
+    public long selectPipeline() {
+        final Pipeline pipeline = simpleDb.pipeline();
+        final CompletableFuture<Long> count = pipeline.selectLong(simpleDb.genSql().append("SELECT COUNT(*) FROM article"));
+        final CompletableFuture<Long> max = pipeline.selectLong(simpleDb.genSql().append("SELECT MAX(`id`) FROM article"));
+        final CompletableFuture<Long> min = pipeline.selectLong(simpleDb.genSql().append("SELECT MIN(`id`) FROM article"));
+        pipeline.execute();
+        return count.join() + max.join() + min.join();
+    }
+
+    /**
+     * SimpleDb.run : 커넥션을 얻고 반납하는 비용이 대부분인 짧은 문장
+     */
+    @Benchmark
+    public void run() {
+        simpleDb.run("UPDATE article SET `title` = ? WHERE `id` = ?", "제목", 1);
+    }
+}
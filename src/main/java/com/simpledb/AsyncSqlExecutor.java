@@ -0,0 +1,147 @@
+package com.simpledb;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Sql을 호출한 스레드 밖에서 실행한다
+ * <p>
+ * 런타임이 지원하면(Java 21+) 작업마다 가상 스레드를 쓰고, 아니면 최대 동시 실행 수만큼의 데몬 스레드 풀을 쓴다.
+ * Java 17에서는 가상 스레드를 쓸 수 없으므로 항상 스레드 풀을 쓴다.
+ * 동시에 실행되는 작업 수는 커넥션 풀 크기만큼으로 제한한다. 자리는 작업 스레드가 세마포어에서 기다리므로 작업을 넘기는 스레드는
+ * 막히지 않는다. 이미 이 실행기의 작업 안에서 넘긴 작업은 자리를 기다리지 않고 그 스레드에서 바로 실행한다.
+ */
+class AsyncSqlExecutor {
+
+    private static final long FALLBACK_KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * 줄일 수 있는 세마포어
+     */
+    private static final class Permits extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        private Permits(final int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(final int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    private final ExecutorService executor;
+    /**
+     * 가상 스레드를 쓸 수 없을 때의 스레드 풀. 가상 스레드를 쓰면 null
+     */
+    private final ThreadPoolExecutor fallbackExecutor;
+    private final Permits permits;
+    /**
+     * 현재 스레드가 이 실행기의 작업을 실행 중인지
+     */
+    private final ThreadLocal<Boolean> inTask = new ThreadLocal<>();
+    private int maxConcurrency;
+
+    AsyncSqlExecutor(final int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+        permits = new Permits(maxConcurrency);
+        final ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        if (virtualExecutor != null) {
+            executor = virtualExecutor;
+            fallbackExecutor = null;
+        } else {
+            fallbackExecutor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+                    FALLBACK_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                final Thread thread = new Thread(runnable, "simpleDb-async");
+                thread.setDaemon(true);
+                return thread;
+            });
+            fallbackExecutor.allowCoreThreadTimeOut(true);
+            executor = fallbackExecutor;
+        }
+    }
+
+    /**
+     * 작업을 넘긴다. 작업 스레드가 실행 자리를 얻은 뒤 실행하므로 호출한 스레드는 기다리지 않는다
+     */
+    <T> CompletableFuture<T> submit(final Supplier<T> task) {
+        if (isInTask()) {
+            // 자리를 잡은 작업이 다른 작업의 자리를 기다리면 모든 자리가 그렇게 묶였을 때 풀리지 않는다
+            try {
+                return CompletableFuture.completedFuture(task.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(e);
+                }
+                inTask.set(Boolean.TRUE);
+                try {
+                    return task.get();
+                } finally {
+                    inTask.remove();
+                    permits.release();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 현재 스레드가 이 실행기의 작업을 실행 중인지
+     */
+    boolean isInTask() {
+        return inTask.get() != null;
+    }
+
+    /**
+     * 최대 동시 실행 수를 바꾼다. 실행 중인 작업은 그대로 두고, 줄어든 만큼은 작업이 끝날 때 돌려받지 않는다
+     */
+    synchronized void resize(final int maxConcurrency) {
+        final int delta = maxConcurrency - this.maxConcurrency;
+        if (delta > 0) {
+            permits.release(delta);
+        } else if (delta < 0) {
+            permits.reducePermits(-delta);
+        }
+        this.maxConcurrency = maxConcurrency;
+        if (fallbackExecutor != null) {
+            if (maxConcurrency > fallbackExecutor.getMaximumPoolSize()) {
+                fallbackExecutor.setMaximumPoolSize(maxConcurrency);
+                fallbackExecutor.setCorePoolSize(maxConcurrency);
+            } else {
+                fallbackExecutor.setCorePoolSize(maxConcurrency);
+                fallbackExecutor.setMaximumPoolSize(maxConcurrency);
+            }
+        }
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
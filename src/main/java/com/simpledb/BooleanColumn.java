@@ -0,0 +1,60 @@
+package com.simpledb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * boolean 값을 박싱 없이 boolean[]에 담는 컬럼
+ */
+public class BooleanColumn extends Column {
+
+    private boolean[] values = new boolean[INITIAL_CAPACITY];
+
+    public void add(final boolean value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length));
+        }
+        values[size++] = value;
+    }
+
+    public void addNull() {
+        markNull(size);
+        add(false);
+    }
+
+    /**
+     * index 번째 값. NULL이면 false
+     */
+    public boolean get(final int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    @Override
+    public Object getObject(final int index) {
+        return isNull(index) ? null : get(index);
+    }
+
+    public boolean[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    void readFrom(final ResultSet rs, final int columnIndex) throws SQLException {
+        final boolean value = rs.getBoolean(columnIndex);
+        if (rs.wasNull()) {
+            addNull();
+        } else {
+            add(value);
+        }
+    }
+
+    @Override
+    BooleanColumn copy() {
+        final BooleanColumn copy = new BooleanColumn();
+        copy.values = Arrays.copyOf(values, values.length);
+        copyStateTo(copy);
+        return copy;
+    }
+}
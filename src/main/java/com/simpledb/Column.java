@@ -0,0 +1,67 @@
+package com.simpledb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.BitSet;
+
+/**
+ * 조회 결과의 한 컬럼 값을 배열에 연속으로 담는 컬럼
+ * <p>
+ * 기본형 컬럼은 값을 박싱하지 않고 기본형 배열에 저장한다. SQL NULL은 별도의 BitSet으로 표시한다.
+ */
+public abstract class Column {
+
+    protected static final int INITIAL_CAPACITY = 16;
+
+    protected int size;
+    private BitSet nulls;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(final int index) {
+        checkIndex(index);
+        return nulls != null && nulls.get(index);
+    }
+
+    /**
+     * index 번째 값을 객체로 돌려준다. NULL이면 null
+     */
+    public abstract Object getObject(int index);
+
+    /**
+     * ResultSet의 현재 row에서 columnIndex 번째 값을 읽어 뒤에 추가한다
+     */
+    abstract void readFrom(ResultSet rs, int columnIndex) throws SQLException;
+
+    /**
+     * 같은 값을 담은 새 컬럼. 조회 결과 캐시에 넣거나 꺼낸 컬럼을 호출한 쪽이 바꿔도 캐시에 영향이 없도록 쓴다
+     */
+    abstract Column copy();
+
+    /**
+     * 크기와 NULL 표시를 copy에 복사한다
+     */
+    void copyStateTo(final Column copy) {
+        copy.size = size;
+        copy.nulls = nulls == null ? null : (BitSet) nulls.clone();
+    }
+
+    protected void markNull(final int index) {
+        if (nulls == null) {
+            nulls = new BitSet();
+        }
+        nulls.set(index);
+    }
+
+    protected void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index %d out of bounds for size %d".formatted(index, size));
+        }
+    }
+
+    protected static int grow(final int capacity) {
+        return Math.max(INITIAL_CAPACITY, capacity + (capacity >> 1));
+    }
+}
@@ -0,0 +1,110 @@
+package com.simpledb;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 조회 결과를 row가 아닌 컬럼 단위로 담은 결과
+ * <p>
+ * 정수, 실수, 불리언 컬럼은 기본형 배열에 담기므로 row마다 객체를 만들지 않는다.
+ */
+public class ColumnarResult {
+
+    private final List<String> columnNames;
+    private final Column[] columns;
+
+    private ColumnarResult(final List<String> columnNames, final Column[] columns) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+    }
+
+    static ColumnarResult empty() {
+        return new ColumnarResult(List.of(), new Column[0]);
+    }
+
+    /**
+     * ResultSet의 남은 row를 모두 읽어 컬럼별로 담는다
+     */
+    static ColumnarResult read(final ResultSet rs) throws SQLException {
+        final ResultSetMetaData rsmd = rs.getMetaData();
+        final int columnSize = rsmd.getColumnCount();
+        final String[] columnNames = new String[columnSize];
+        final Column[] columns = new Column[columnSize];
+        for (int i = 0; i < columnSize; i++) {
+            columnNames[i] = rsmd.getColumnName(i + 1);
+            columns[i] = columnFor(rsmd, i + 1);
+        }
+        while (rs.next()) {
+            for (int i = 0; i < columnSize; i++) {
+                columns[i].readFrom(rs, i + 1);
+            }
+        }
+        return new ColumnarResult(List.of(columnNames), columns);
+    }
+
+    /**
+     * SQL 타입에 맞는 컬럼을 고른다. 기본형으로 값을 잃지 않고 담을 수 없는 타입은 ObjectColumn에 담는다
+     */
+    private static Column columnFor(final ResultSetMetaData rsmd, final int columnIndex) throws SQLException {
+        final boolean signed = rsmd.isSigned(columnIndex);
+        return switch (rsmd.getColumnType(columnIndex)) {
+            case Types.BIT, Types.BOOLEAN -> rsmd.getPrecision(columnIndex) <= 1 ? new BooleanColumn() : new LongColumn();
+            case Types.TINYINT, Types.SMALLINT -> new IntColumn();
+            case Types.INTEGER -> signed ? new IntColumn() : new LongColumn();
+            case Types.BIGINT -> signed ? new LongColumn() : new ObjectColumn();
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> new DoubleColumn();
+            default -> new ObjectColumn();
+        };
+    }
+
+    /**
+     * 컬럼마다 값을 복사한 새 결과
+     */
+    ColumnarResult copy() {
+        final Column[] copiedColumns = new Column[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            copiedColumns[i] = columns[i].copy();
+        }
+        return new ColumnarResult(columnNames, copiedColumns);
+    }
+
+    public int getRowCount() {
+        return columns.length == 0 ? 0 : columns[0].size();
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    public Column getColumn(final int index) {
+        return columns[index];
+    }
+
+    public Column getColumn(final String columnName) {
+        final int index = columnNames.indexOf(columnName);
+        if (index < 0) {
+            throw new NoSuchElementException("No column named " + columnName);
+        }
+        return columns[index];
+    }
+
+    public LongColumn getLongColumn(final String columnName) {
+        return (LongColumn) getColumn(columnName);
+    }
+
+    public IntColumn getIntColumn(final String columnName) {
+        return (IntColumn) getColumn(columnName);
+    }
+
+    public DoubleColumn getDoubleColumn(final String columnName) {
+        return (DoubleColumn) getColumn(columnName);
+    }
+
+    public BooleanColumn getBooleanColumn(final String columnName) {
+        return (BooleanColumn) getColumn(columnName);
+    }
+}
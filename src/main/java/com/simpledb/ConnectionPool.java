@@ -0,0 +1,362 @@
+package com.simpledb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 크기가 제한된 JDBC 커넥션 풀
+ * <p>
+ * 최근에 사용한 커넥션부터 다시 빌려주고(LIFO), 빌려줄 때 유효성을 검사한다.
+ * 백그라운드 스레드가 주기적으로 오래 쉰 커넥션과 수명이 다한 커넥션을 정리하고 최소 유휴 커넥션 수를 유지한다.
+ */
+class ConnectionPool {
+
+    /**
+     * 이 시간 안에 사용된 커넥션은 빌려줄 때 유효성 검사를 생략한다
+     */
+    private static final long ALIVE_BYPASS_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long HOUSEKEEPING_PERIOD_MILLIS = 30_000;
+
+    @FunctionalInterface
+    interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition connectionReleased = lock.newCondition();
+    private int totalCount;
+    private boolean shutdown;
+    private volatile ScheduledExecutorService housekeeper;
+
+    private volatile int minIdle = 0;
+    private volatile int maxSize = 10;
+    private volatile long borrowTimeoutMillis = 30_000;
+    private volatile long idleTimeoutMillis = 600_000;
+    private volatile long maxLifetimeMillis = 1_800_000;
+    private volatile int validationTimeoutSeconds = 5;
+    private volatile int statementCacheSize = 64;
+
+    ConnectionPool(final ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * 풀에서 커넥션을 빌린다. 남는 커넥션이 없고 최대 크기에 도달했다면 반납될 때까지 대기한다
+     *
+     * @throws SQLTransientConnectionException 대기 시간 안에 커넥션을 얻지 못한 경우
+     */
+    PooledConnection borrow() throws SQLException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        startHousekeeping();
+        while (true) {
+            final PooledConnection candidate = takeIdleOrReserve(deadline);
+            if (candidate == null) {
+                return openConnection();
+            }
+            if (isUsable(candidate)) {
+                return candidate;
+            }
+            discard(candidate);
+        }
+    }
+
+    /**
+     * 빌린 커넥션을 풀에 반납한다. 트랜잭션이 열려 있으면 롤백하고 auto commit 상태로 되돌린다
+     */
+    void release(final PooledConnection pooledConnection) {
+        if (pooledConnection == null) {
+            return;
+        }
+        if (!resetForReuse(pooledConnection) || isExpired(pooledConnection)) {
+            discard(pooledConnection);
+            return;
+        }
+        lock.lock();
+        try {
+            if (!shutdown) {
+                pooledConnection.touch();
+                idleConnections.offerFirst(pooledConnection);
+                connectionReleased.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        discard(pooledConnection);
+    }
+
+    /**
+     * 유휴 커넥션을 모두 닫는다. 풀은 계속 사용할 수 있다
+     */
+    void closeIdleConnections() {
+        final List<PooledConnection> closing;
+        lock.lock();
+        try {
+            closing = new ArrayList<>(idleConnections);
+            idleConnections.clear();
+        } finally {
+            lock.unlock();
+        }
+        closing.forEach(this::discard);
+    }
+
+    /**
+     * 풀을 종료한다. 유휴 커넥션은 바로 닫고, 사용 중인 커넥션은 반납될 때 닫는다
+     */
+    void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            if (housekeeper != null) {
+                housekeeper.shutdownNow();
+            }
+            connectionReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        closeIdleConnections();
+    }
+
+    int getActiveCount() {
+        lock.lock();
+        try {
+            return totalCount - idleConnections.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getIdleCount() {
+        lock.lock();
+        try {
+            return idleConnections.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setPoolSize(final int minIdle, final int maxSize) {
+        if (minIdle < 0 || maxSize < 1 || minIdle > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size : minIdle=%d, maxSize=%d".formatted(minIdle, maxSize));
+        }
+        this.minIdle = minIdle;
+        this.maxSize = maxSize;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 다른 풀의 크기, 시간 제한, statement 캐시 설정을 그대로 가져온다
+     */
+    void copySettingsFrom(final ConnectionPool other) {
+        minIdle = other.minIdle;
+        maxSize = other.maxSize;
+        borrowTimeoutMillis = other.borrowTimeoutMillis;
+        idleTimeoutMillis = other.idleTimeoutMillis;
+        maxLifetimeMillis = other.maxLifetimeMillis;
+        validationTimeoutSeconds = other.validationTimeoutSeconds;
+        statementCacheSize = other.statementCacheSize;
+    }
+
+    void setBorrowTimeoutMillis(final long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    void setIdleTimeoutMillis(final long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    void setMaxLifetimeMillis(final long maxLifetimeMillis) {
+        this.maxLifetimeMillis = maxLifetimeMillis;
+    }
+
+    void setValidationTimeoutSeconds(final int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    /**
+     * 이후에 여는 커넥션부터 적용된다
+     */
+    void setStatementCacheSize(final int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * 유휴 커넥션을 꺼내거나, 새로 열 자리를 예약한다
+     *
+     * @return 유휴 커넥션, 새 커넥션을 열어야 하면 null
+     */
+    private PooledConnection takeIdleOrReserve(final long deadline) throws SQLException {
+        lock.lock();
+        try {
+            while (true) {
+                if (shutdown) {
+                    throw new SQLException("Connection pool has been shut down", "08003");
+                }
+                final PooledConnection idle = idleConnections.pollFirst();
+                if (idle != null) {
+                    return idle;
+                }
+                if (totalCount < maxSize) {
+                    totalCount++;
+                    return null;
+                }
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SQLTransientConnectionException(
+                            "Timed out after %dms waiting for a connection (maxSize=%d)".formatted(borrowTimeoutMillis, maxSize), "08001");
+                }
+                connectionReleased.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", "08001", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 예약된 자리에 새 커넥션을 연다. 실패하면 예약을 취소한다
+     */
+    private PooledConnection openConnection() throws SQLException {
+        try {
+            return new PooledConnection(connectionFactory.create(), statementCacheSize, this);
+        } catch (SQLException | RuntimeException e) {
+            cancelReservation();
+            throw e;
+        }
+    }
+
+    private boolean isUsable(final PooledConnection pooledConnection) {
+        if (isExpired(pooledConnection)) {
+            return false;
+        }
+        if (System.nanoTime() - pooledConnection.lastUsedAt() < ALIVE_BYPASS_WINDOW_NANOS) {
+            return true;
+        }
+        try {
+            return pooledConnection.connection().isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean isExpired(final PooledConnection pooledConnection) {
+        return maxLifetimeMillis > 0
+                && System.nanoTime() - pooledConnection.createdAt() > TimeUnit.MILLISECONDS.toNanos(maxLifetimeMillis);
+    }
+
+    private boolean resetForReuse(final PooledConnection pooledConnection) {
+        final Connection connection = pooledConnection.connection();
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(final PooledConnection pooledConnection) {
+        try {
+            pooledConnection.close();
+        } catch (SQLException ignored) {
+            // 이미 끊어진 커넥션은 닫는 데 실패해도 버리면 된다
+        }
+        cancelReservation();
+    }
+
+    private void startHousekeeping() {
+        if (housekeeper != null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (housekeeper == null && !shutdown) {
+                housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    final Thread thread = new Thread(runnable, "simpleDb-pool-housekeeper");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                housekeeper.scheduleWithFixedDelay(this::housekeep,
+                        HOUSEKEEPING_PERIOD_MILLIS, HOUSEKEEPING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 오래 쉰 커넥션과 수명이 다한 커넥션을 닫고, 최소 유휴 커넥션 수를 채운다
+     */
+    private void housekeep() {
+        final List<PooledConnection> closing = new ArrayList<>();
+        final int missing;
+        lock.lock();
+        try {
+            final long now = System.nanoTime();
+            final long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+            final Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+            while (iterator.hasNext()) {
+                final PooledConnection idle = iterator.next();
+                final boolean idleTooLong = idleTimeoutMillis > 0 && now - idle.lastUsedAt() > idleTimeoutNanos
+                        && totalCount - closing.size() > minIdle;
+                if (idleTooLong || isExpired(idle)) {
+                    iterator.remove();
+                    closing.add(idle);
+                }
+            }
+            missing = shutdown ? 0 : Math.max(0, minIdle - (totalCount - closing.size()));
+            totalCount += missing;
+        } finally {
+            lock.unlock();
+        }
+        closing.forEach(this::discard);
+
+        for (int i = 0; i < missing; i++) {
+            try {
+                release(openConnection());
+            } catch (SQLException | RuntimeException e) {
+                // 다음 주기에 다시 시도한다
+                for (int j = i + 1; j < missing; j++) {
+                    cancelReservation();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 커넥션 하나만큼의 자리를 비우고 대기 중인 스레드를 깨운다
+     */
+    private void cancelReservation() {
+        lock.lock();
+        try {
+            totalCount--;
+            connectionReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.simpledb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.stream.DoubleStream;
+
+/**
+ * double 값을 박싱 없이 double[]에 담는 컬럼
+ */
+public class DoubleColumn extends Column {
+
+    private double[] values = new double[INITIAL_CAPACITY];
+
+    public void add(final double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length));
+        }
+        values[size++] = value;
+    }
+
+    public void addNull() {
+        markNull(size);
+        add(0.0);
+    }
+
+    /**
+     * index 번째 값. NULL이면 0.0
+     */
+    public double get(final int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    @Override
+    public Object getObject(final int index) {
+        return isNull(index) ? null : get(index);
+    }
+
+    public double[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    public DoubleStream stream() {
+        return Arrays.stream(values, 0, size);
+    }
+
+    @Override
+    void readFrom(final ResultSet rs, final int columnIndex) throws SQLException {
+        final double value = rs.getDouble(columnIndex);
+        if (rs.wasNull()) {
+            addNull();
+        } else {
+            add(value);
+        }
+    }
+
+    @Override
+    DoubleColumn copy() {
+        final DoubleColumn copy = new DoubleColumn();
+        copy.values = Arrays.copyOf(values, values.length);
+        copyStateTo(copy);
+        return copy;
+    }
+}
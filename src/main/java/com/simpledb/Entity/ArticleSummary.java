@@ -0,0 +1,4 @@
+package com.simpledb.Entity;
+
+public record ArticleSummary(long id, String title, boolean isBlind) {
+}
@@ -0,0 +1,409 @@
+package com.simpledb;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.RecordComponent;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ResultSet의 row를 entity 객체로 변환한다
+ * <p>
+ * (entity 클래스, 컬럼 구성)마다 한 번만 setter를 찾아 MethodHandle로 만들어 두고, 모든 스레드가 재사용한다.
+ * row를 변환할 때는 컬럼 순서대로 값을 읽어 해당 setter에 바로 넘긴다.
+ * <p>
+ * record나 인자 없는 생성자가 없는 클래스는 setter 대신 생성자 인자 이름(record 컴포넌트 이름, 또는 {@code -parameters}로
+ * 컴파일된 생성자의 파라미터 이름)과 같은 컬럼을 모아 생성자를 호출한다. 결과에 없는 인자는 null(기본형은 0, false)이다.
+ * <p>
+ * Reader, InputStream, ReadableByteChannel 타입 필드에는 컬럼 값을 문자열로 만들지 않고 드라이버의 stream을 넘긴다.
+ * 스트리밍 조회({@link Sql#iterate(Class)} 등)에서는 다음 row로 넘어가기 전까지만 읽을 수 있다.
+ */
+final class EntityMapper<T> {
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CREATOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+    private static final Map<Key, EntityMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, String> SELECT_LISTS = new ConcurrentHashMap<>();
+
+    private record Key(Class<?> type, List<String> columnNames) {
+    }
+
+    /**
+     * 컬럼 값을 읽는 방법
+     */
+    private enum ValueKind {
+        OBJECT, READER, INPUT_STREAM, CHANNEL;
+
+        static ValueKind of(final Class<?> fieldType) {
+            if (fieldType == Reader.class) {
+                return READER;
+            }
+            if (fieldType == InputStream.class) {
+                return INPUT_STREAM;
+            }
+            if (fieldType == ReadableByteChannel.class) {
+                return CHANNEL;
+            }
+            return OBJECT;
+        }
+
+        Object read(final ResultSet rs, final int columnIndex) throws SQLException {
+            return switch (this) {
+                case OBJECT -> rs.getObject(columnIndex);
+                case READER -> rs.getCharacterStream(columnIndex);
+                case INPUT_STREAM -> rs.getBinaryStream(columnIndex);
+                case CHANNEL -> {
+                    final InputStream in = rs.getBinaryStream(columnIndex);
+                    yield in == null ? null : Channels.newChannel(in);
+                }
+            };
+        }
+
+        /**
+         * 이미 읽어 둔 값(문자열, byte[])을 필드 타입의 stream으로 감싼다
+         */
+        Object convert(final Object value) {
+            if (value == null || this == OBJECT) {
+                return value;
+            }
+            if (this == READER) {
+                return new StringReader(value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : value.toString());
+            }
+            final InputStream in = new ByteArrayInputStream(
+                    value instanceof byte[] bytes ? bytes : value.toString().getBytes(StandardCharsets.UTF_8));
+            return this == INPUT_STREAM ? in : Channels.newChannel(in);
+        }
+    }
+
+    /**
+     * 생성자로 객체를 만드는 경우의 인자 정보
+     *
+     * @param argumentIndexes 컬럼 순서대로의 생성자 인자 위치. 대응하는 인자가 없는 컬럼은 -1
+     * @param argumentTypes   인자 타입. 기본형은 wrapper 타입
+     * @param defaults        값이 없을 때 넘길 인자. 기본형은 0, false
+     */
+    private record Creator(MethodHandle handle, int[] argumentIndexes, Class<?>[] argumentTypes, Object[] defaults) {
+
+        Object create(final Object[] arguments) throws Throwable {
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = argument(i, arguments[i]);
+            }
+            return (Object) handle.invokeExact(arguments);
+        }
+
+        private Object argument(final int index, final Object value) {
+            if (value == null) {
+                return defaults[index];
+            }
+            final Class<?> argumentType = argumentTypes[index];
+            if (!(value instanceof Number number) || argumentType.isInstance(value)) {
+                return value;
+            }
+            // INT UNSIGNED는 Long, BIGINT UNSIGNED는 BigInteger 등 드라이버가 돌려주는 타입을 인자 타입에 맞춘다
+            if (argumentType == Long.class) {
+                return number.longValue();
+            }
+            if (argumentType == Integer.class) {
+                return number.intValue();
+            }
+            if (argumentType == Short.class) {
+                return number.shortValue();
+            }
+            if (argumentType == Byte.class) {
+                return number.byteValue();
+            }
+            if (argumentType == Double.class) {
+                return number.doubleValue();
+            }
+            if (argumentType == Float.class) {
+                return number.floatValue();
+            }
+            return value;
+        }
+    }
+
+    private final Class<T> type;
+    /**
+     * 인자 없는 생성자. 생성자로 객체를 만드는 경우 null
+     */
+    private final MethodHandle constructor;
+    /**
+     * 컬럼 순서대로의 setter. 대응하는 필드가 없는 컬럼은 null
+     */
+    private final MethodHandle[] setters;
+    private final ValueKind[] valueKinds;
+    /**
+     * setter로 값을 넣는 경우 null
+     */
+    private final Creator creator;
+
+    private EntityMapper(final Class<T> type, final MethodHandle constructor, final MethodHandle[] setters,
+                         final ValueKind[] valueKinds, final Creator creator) {
+        this.type = type;
+        this.constructor = constructor;
+        this.setters = setters;
+        this.valueKinds = valueKinds;
+        this.creator = creator;
+    }
+
+    /**
+     * 조회 결과의 컬럼 구성에 맞는 mapper를 얻는다. 처음 보는 구성이면 만들어서 캐시한다
+     */
+    static <T> EntityMapper<T> of(final Class<T> type, final ResultSetMetaData rsmd) throws SQLException {
+        final String[] columnNames = new String[rsmd.getColumnCount()];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNames[i] = rsmd.getColumnName(i + 1);
+        }
+        return of(type, columnNames);
+    }
+
+    static <T> EntityMapper<T> of(final Class<T> type, final RowSchema schema) {
+        final String[] columnNames = new String[schema.columnCount()];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNames[i] = schema.columnName(i);
+        }
+        return of(type, columnNames);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> EntityMapper<T> of(final Class<T> type, final String[] columnNames) {
+        return (EntityMapper<T>) MAPPERS.computeIfAbsent(new Key(type, List.of(columnNames)),
+                key -> compile(type, columnNames));
+    }
+
+    /**
+     * ResultSet의 현재 row를 entity 객체로 변환한다
+     */
+    T map(final ResultSet rs) throws SQLException {
+        if (creator != null) {
+            final Object[] arguments = new Object[creator.defaults().length];
+            for (int i = 0; i < valueKinds.length; i++) {
+                final int argumentIndex = creator.argumentIndexes()[i];
+                if (argumentIndex >= 0) {
+                    arguments[argumentIndex] = valueKinds[i].read(rs, i + 1);
+                }
+            }
+            return create(arguments);
+        }
+        try {
+            final Object instance = (Object) constructor.invokeExact();
+            for (int i = 0; i < setters.length; i++) {
+                final MethodHandle setter = setters[i];
+                if (setter != null) {
+                    setter.invokeExact(instance, valueKinds[i].read(rs, i + 1));
+                }
+            }
+            return type.cast(instance);
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 이미 읽어 둔 row 값을 entity 객체로 변환한다
+     */
+    T map(final Row row) {
+        final Object[] values = row.valueArray();
+        if (creator != null) {
+            final Object[] arguments = new Object[creator.defaults().length];
+            for (int i = 0; i < valueKinds.length; i++) {
+                final int argumentIndex = creator.argumentIndexes()[i];
+                if (argumentIndex >= 0) {
+                    arguments[argumentIndex] = valueKinds[i].convert(values[i]);
+                }
+            }
+            return create(arguments);
+        }
+        try {
+            final Object instance = (Object) constructor.invokeExact();
+            for (int i = 0; i < setters.length; i++) {
+                final MethodHandle setter = setters[i];
+                if (setter != null) {
+                    setter.invokeExact(instance, valueKinds[i].convert(values[i]));
+                }
+            }
+            return type.cast(instance);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private T create(final Object[] arguments) {
+        try {
+            return type.cast(creator.create(arguments));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * type이 매핑하는 컬럼만 나열한 SELECT 목록. 예) {@code `id`, `title`}
+     */
+    static String selectList(final Class<?> type) {
+        return SELECT_LISTS.computeIfAbsent(type, key -> {
+            final StringBuilder selectList = new StringBuilder();
+            for (String name : propertyNames(key)) {
+                if (!selectList.isEmpty()) {
+                    selectList.append(", ");
+                }
+                selectList.append('`').append(name).append('`');
+            }
+            return selectList.toString();
+        });
+    }
+
+    private static List<String> propertyNames(final Class<?> type) {
+        final Constructor<?> creator = creatorOf(type);
+        if (creator != null) {
+            return Arrays.stream(parameterNames(type, creator)).toList();
+        }
+        return Arrays.stream(type.getDeclaredFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()) && !field.isSynthetic())
+                .map(Field::getName)
+                .toList();
+    }
+
+    /**
+     * 객체를 만들 생성자. record는 canonical 생성자, 인자 없는 생성자가 있으면 null(setter 사용),
+     * 그 외에는 파라미터가 가장 많은 public 생성자
+     */
+    private static Constructor<?> creatorOf(final Class<?> type) {
+        if (type.isRecord()) {
+            final Class<?>[] componentTypes = Arrays.stream(type.getRecordComponents())
+                    .map(RecordComponent::getType)
+                    .toArray(Class<?>[]::new);
+            try {
+                return type.getDeclaredConstructor(componentTypes);
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        try {
+            type.getDeclaredConstructor();
+            return null;
+        } catch (NoSuchMethodException e) {
+            return Arrays.stream(type.getConstructors())
+                    .max(Comparator.comparingInt(Constructor::getParameterCount))
+                    .orElseThrow(() -> new IllegalArgumentException("No public constructor : " + type.getName()));
+        }
+    }
+
+    private static String[] parameterNames(final Class<?> type, final Constructor<?> creator) {
+        if (type.isRecord()) {
+            return Arrays.stream(type.getRecordComponents()).map(RecordComponent::getName).toArray(String[]::new);
+        }
+        final Parameter[] parameters = creator.getParameters();
+        final String[] names = new String[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            if (!parameters[i].isNamePresent()) {
+                throw new IllegalArgumentException(
+                        "Constructor parameter names are not available, compile with -parameters : " + type.getName());
+            }
+            names[i] = parameters[i].getName();
+        }
+        return names;
+    }
+
+    private static <T> EntityMapper<T> compile(final Class<T> type, final String[] columnNames) {
+        final Constructor<?> creatorConstructor = creatorOf(type);
+        if (creatorConstructor != null) {
+            return compileCreator(type, creatorConstructor, columnNames);
+        }
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            final MethodHandle constructor = lookup.unreflectConstructor(type.getDeclaredConstructor())
+                    .asType(CONSTRUCTOR_TYPE);
+
+            final MethodHandle[] setters = new MethodHandle[columnNames.length];
+            final ValueKind[] valueKinds = new ValueKind[columnNames.length];
+            Arrays.fill(valueKinds, ValueKind.OBJECT);
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                final Method setterMethod = type.getMethod("set" + capitalize(field.getName()), field.getType());
+                final MethodHandle setter = lookup.unreflect(setterMethod).asType(SETTER_TYPE);
+                for (int i = 0; i < columnNames.length; i++) {
+                    if (columnNames[i].equals(field.getName())) {
+                        setters[i] = setter;
+                        valueKinds[i] = ValueKind.of(field.getType());
+                    }
+                }
+            }
+            return new EntityMapper<>(type, constructor, setters, valueKinds, null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> EntityMapper<T> compileCreator(final Class<T> type, final Constructor<?> constructor,
+                                                      final String[] columnNames) {
+        final String[] parameterNames = parameterNames(type, constructor);
+        final Class<?>[] parameterTypes = constructor.getParameterTypes();
+        final Class<?>[] argumentTypes = new Class<?>[parameterTypes.length];
+        final Object[] defaults = new Object[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            argumentTypes[i] = MethodType.methodType(parameterTypes[i]).wrap().returnType();
+            if (parameterTypes[i].isPrimitive()) {
+                defaults[i] = Array.get(Array.newInstance(parameterTypes[i], 1), 0);
+            }
+        }
+
+        final int[] argumentIndexes = new int[columnNames.length];
+        final ValueKind[] valueKinds = new ValueKind[columnNames.length];
+        Arrays.fill(argumentIndexes, -1);
+        Arrays.fill(valueKinds, ValueKind.OBJECT);
+        for (int i = 0; i < columnNames.length; i++) {
+            for (int j = 0; j < parameterNames.length; j++) {
+                if (columnNames[i].equals(parameterNames[j])) {
+                    argumentIndexes[i] = j;
+                    valueKinds[i] = ValueKind.of(parameterTypes[j]);
+                }
+            }
+        }
+
+        try {
+            final MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, parameterTypes.length)
+                    .asType(CREATOR_TYPE);
+            return new EntityMapper<>(type, null, new MethodHandle[columnNames.length], valueKinds,
+                    new Creator(handle, argumentIndexes, argumentTypes, defaults));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String capitalize(final String string) {
+        if (string == null || string.isEmpty()) {
+            return string;
+        }
+        return string.substring(0, 1).toUpperCase() + string.substring(1);
+    }
+}
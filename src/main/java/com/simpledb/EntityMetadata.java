@@ -0,0 +1,179 @@
+package com.simpledb;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * entity 클래스를 저장할 때 필요한 테이블, 컬럼 정보
+ * <p>
+ * 테이블 이름은 클래스 이름을 소문자로 바꾼 것이고, getter가 있는 필드가 같은 이름의 컬럼이 된다. 이름이 id인 필드는 주키로 본다.
+ * 클래스마다 한 번만 getter, setter를 찾아 MethodHandle로 만들어 둔다.
+ */
+final class EntityMetadata<T> {
+
+    private static final String ID_COLUMN = "id";
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final Map<Class<?>, EntityMetadata<?>> METADATA = new ConcurrentHashMap<>();
+
+    private final String table;
+    /**
+     * 주키를 제외한 컬럼 이름
+     */
+    private final String[] columns;
+    private final MethodHandle[] getters;
+    private final MethodHandle idGetter;
+    private final MethodHandle idSetter;
+    private final Class<?> idType;
+
+    private EntityMetadata(final String table, final String[] columns, final MethodHandle[] getters,
+                           final MethodHandle idGetter, final MethodHandle idSetter, final Class<?> idType) {
+        this.table = table;
+        this.columns = columns;
+        this.getters = getters;
+        this.idGetter = idGetter;
+        this.idSetter = idSetter;
+        this.idType = idType;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> EntityMetadata<T> of(final Class<T> type) {
+        return (EntityMetadata<T>) METADATA.computeIfAbsent(type, EntityMetadata::compile);
+    }
+
+    String table() {
+        return table;
+    }
+
+    String[] columns() {
+        return columns;
+    }
+
+    boolean hasId() {
+        return idGetter != null;
+    }
+
+    /**
+     * @return 주키를 제외한 컬럼 값. {@link #columns()}와 같은 순서
+     */
+    Object[] values(final T entity) {
+        final Object[] values = new Object[getters.length];
+        try {
+            for (int i = 0; i < getters.length; i++) {
+                values[i] = (Object) getters[i].invokeExact((Object) entity);
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+        return values;
+    }
+
+    /**
+     * @return 주키 값, 주키가 없거나 아직 정해지지 않았으면 null. long, int 같은 기본 타입 주키는 0이면 정해지지 않은 것으로 본다
+     */
+    Object id(final T entity) {
+        if (idGetter == null) {
+            return null;
+        }
+        try {
+            final Object id = (Object) idGetter.invokeExact((Object) entity);
+            if (idType.isPrimitive() && id instanceof Number number && number.longValue() == 0) {
+                return null;
+            }
+            return id;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * AUTO_INCREMENT로 생성된 주키를 필드 타입에 맞춰 넣는다
+     */
+    void setId(final T entity, final long id) {
+        if (idSetter == null) {
+            return;
+        }
+        final Object value;
+        if (idType == Integer.class || idType == int.class) {
+            value = (int) id;
+        } else if (idType == String.class) {
+            value = String.valueOf(id);
+        } else {
+            value = id;
+        }
+        try {
+            idSetter.invokeExact((Object) entity, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> EntityMetadata<T> compile(final Class<T> type) {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final List<String> columns = new ArrayList<>();
+        final List<MethodHandle> getters = new ArrayList<>();
+        MethodHandle idGetter = null;
+        MethodHandle idSetter = null;
+        Class<?> idType = null;
+        try {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                final Method getterMethod = findGetter(type, field);
+                if (getterMethod == null) {
+                    continue;
+                }
+                final MethodHandle getter = lookup.unreflect(getterMethod).asType(GETTER_TYPE);
+                if (field.getName().equals(ID_COLUMN)) {
+                    idGetter = getter;
+                    idType = field.getType();
+                    final Method setterMethod = type.getMethod("set" + capitalize(field.getName()), field.getType());
+                    idSetter = lookup.unreflect(setterMethod).asType(SETTER_TYPE);
+                } else {
+                    columns.add(field.getName());
+                    getters.add(getter);
+                }
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        return new EntityMetadata<>(type.getSimpleName().toLowerCase(Locale.ROOT), columns.toArray(String[]::new),
+                getters.toArray(MethodHandle[]::new), idGetter, idSetter, idType);
+    }
+
+    private static Method findGetter(final Class<?> type, final Field field) {
+        final String name = capitalize(field.getName());
+        try {
+            return type.getMethod("get" + name);
+        } catch (NoSuchMethodException e) {
+            if (field.getType() != boolean.class && field.getType() != Boolean.class) {
+                return null;
+            }
+        }
+        try {
+            return type.getMethod("is" + name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static String capitalize(final String string) {
+        return string.substring(0, 1).toUpperCase() + string.substring(1);
+    }
+}
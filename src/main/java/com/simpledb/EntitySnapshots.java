@@ -0,0 +1,64 @@
+package com.simpledb;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 조회하거나 저장한 entity의 컬럼 값 사본
+ * <p>
+ * entity 객체 자체(equals가 아닌 identity)를 키로 약하게 참조하므로, 더 이상 쓰지 않는 entity의 사본은 GC 후 정리된다.
+ */
+class EntitySnapshots {
+
+    private final Map<IdentityKey, Object[]> snapshots = new HashMap<>();
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    private static final class IdentityKey extends WeakReference<Object> {
+        private final int hash;
+
+        IdentityKey(final Object entity, final ReferenceQueue<Object> queue) {
+            super(entity, queue);
+            this.hash = System.identityHashCode(entity);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof IdentityKey other)) {
+                return false;
+            }
+            final Object entity = get();
+            return entity != null && entity == other.get();
+        }
+    }
+
+    synchronized void put(final Object entity, final Object[] values) {
+        expunge();
+        snapshots.put(new IdentityKey(entity, collected), values);
+    }
+
+    /**
+     * @return 마지막으로 조회하거나 저장했을 때의 컬럼 값, 없으면 null
+     */
+    synchronized Object[] get(final Object entity) {
+        expunge();
+        return snapshots.get(new IdentityKey(entity, null));
+    }
+
+    private void expunge() {
+        Reference<?> key;
+        while ((key = collected.poll()) != null) {
+            snapshots.remove(key);
+        }
+    }
+}
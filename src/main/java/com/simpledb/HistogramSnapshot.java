@@ -0,0 +1,15 @@
+package com.simpledb;
+
+/**
+ * 지연 시간 히스토그램의 한 시점 요약. 백분위 값은 2의 거듭제곱 단위 구간의 상한이다
+ *
+ * @param count      기록된 횟수
+ * @param meanMicros 평균 (µs)
+ * @param p50Micros  중앙값 (µs)
+ * @param p95Micros  95 백분위 (µs)
+ * @param p99Micros  99 백분위 (µs)
+ * @param maxMicros  최댓값 (µs)
+ */
+public record HistogramSnapshot(long count, double meanMicros, long p50Micros, long p95Micros, long p99Micros,
+                                long maxMicros) {
+}
@@ -0,0 +1,65 @@
+package com.simpledb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * int 값을 박싱 없이 int[]에 담는 컬럼
+ */
+public class IntColumn extends Column {
+
+    private int[] values = new int[INITIAL_CAPACITY];
+
+    public void add(final int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length));
+        }
+        values[size++] = value;
+    }
+
+    public void addNull() {
+        markNull(size);
+        add(0);
+    }
+
+    /**
+     * index 번째 값. NULL이면 0
+     */
+    public int get(final int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    @Override
+    public Object getObject(final int index) {
+        return isNull(index) ? null : get(index);
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    public IntStream stream() {
+        return Arrays.stream(values, 0, size);
+    }
+
+    @Override
+    void readFrom(final ResultSet rs, final int columnIndex) throws SQLException {
+        final int value = rs.getInt(columnIndex);
+        if (rs.wasNull()) {
+            addNull();
+        } else {
+            add(value);
+        }
+    }
+
+    @Override
+    IntColumn copy() {
+        final IntColumn copy = new IntColumn();
+        copy.values = Arrays.copyOf(values, values.length);
+        copyStateTo(copy);
+        return copy;
+    }
+}
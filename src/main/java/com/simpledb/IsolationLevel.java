@@ -0,0 +1,26 @@
+package com.simpledb;
+
+import java.sql.Connection;
+
+/**
+ * 트랜잭션 격리 수준
+ */
+public enum IsolationLevel {
+    READ_UNCOMMITTED(Connection.TRANSACTION_READ_UNCOMMITTED),
+    READ_COMMITTED(Connection.TRANSACTION_READ_COMMITTED),
+    REPEATABLE_READ(Connection.TRANSACTION_REPEATABLE_READ),
+    SERIALIZABLE(Connection.TRANSACTION_SERIALIZABLE);
+
+    private final int level;
+
+    IsolationLevel(final int level) {
+        this.level = level;
+    }
+
+    /**
+     * {@link Connection#setTransactionIsolation(int)}에 넘길 값
+     */
+    int level() {
+        return level;
+    }
+}
@@ -0,0 +1,95 @@
+package com.simpledb;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 정렬 키의 마지막 값 다음부터 한 페이지씩 조회하는 iterator
+ * <p>
+ * 페이지마다 {@code WHERE key > 마지막 값 ORDER BY key LIMIT n}으로 조회하므로, OFFSET과 달리 뒤쪽 페이지도 앞쪽 페이지와
+ * 같은 비용으로 읽는다. 페이지를 요청할 때 조회하며 커넥션을 붙잡고 있지 않는다.
+ */
+public class KeysetPaginator<T> implements Iterator<List<T>> {
+
+    @FunctionalInterface
+    interface PageFetcher {
+        /**
+         * @param lastKey 이전 페이지 마지막 row의 정렬 키 값, 첫 페이지면 null
+         * @return 조회한 row들, 실패하면 null
+         */
+        List<Row> fetch(Object[] lastKey);
+    }
+
+    private final PageFetcher fetcher;
+    private final String[] keyColumns;
+    private final int pageSize;
+    private final Function<List<Row>, List<T>> pageMapper;
+    private Object[] lastKey;
+    private List<T> nextPage;
+    private boolean finished;
+
+    KeysetPaginator(final PageFetcher fetcher, final String[] keyColumns, final int pageSize,
+                    final Function<List<Row>, List<T>> pageMapper) {
+        this.fetcher = fetcher;
+        this.keyColumns = keyColumns;
+        this.pageSize = pageSize;
+        this.pageMapper = pageMapper;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextPage != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        final List<Row> rows = fetcher.fetch(lastKey);
+        if (rows == null || rows.size() < pageSize) {
+            finished = true;
+        }
+        if (rows == null || rows.isEmpty()) {
+            return false;
+        }
+        lastKey = keyOf(rows.get(rows.size() - 1));
+        nextPage = pageMapper.apply(rows);
+        return true;
+    }
+
+    @Override
+    public List<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final List<T> page = nextPage;
+        nextPage = null;
+        return page;
+    }
+
+    /**
+     * 페이지들을 차례로 조회하는 Stream으로 감싼다
+     */
+    public Stream<List<T>> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private Object[] keyOf(final Row row) {
+        final Object[] key = new Object[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (!row.containsKey(keyColumns[i])) {
+                throw new IllegalStateException("Sort key column is not in the result : " + keyColumns[i]);
+            }
+            key[i] = row.get(keyColumns[i]);
+            if (key[i] == null) {
+                throw new IllegalStateException("Sort key column must not be null : " + keyColumns[i]);
+            }
+        }
+        return key;
+    }
+}
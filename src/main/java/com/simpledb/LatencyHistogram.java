@@ -0,0 +1,61 @@
+package com.simpledb;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 락과 객체 생성 없이 기록하는 지연 시간 히스토그램
+ * <p>
+ * µs 단위 값을 2의 거듭제곱 구간으로 나눠 센다. i 번째 구간은 [2^(i-1), 2^i) µs 이다.
+ */
+class LatencyHistogram {
+
+    private static final int BUCKET_COUNT = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void record(final long nanos) {
+        final long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        final int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalMicros.add(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    HistogramSnapshot snapshot() {
+        final long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        final double mean = total == 0 ? 0 : (double) totalMicros.sum() / count.sum();
+        return new HistogramSnapshot(total, mean,
+                percentile(counts, total, 0.50), percentile(counts, total, 0.95), percentile(counts, total, 0.99),
+                maxMicros.get());
+    }
+
+    private static long percentile(final long[] counts, final long total, final double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(total * percentile);
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return i == 0 ? 0 : (1L << i) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,65 @@
+package com.simpledb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+/**
+ * long 값을 박싱 없이 long[]에 담는 컬럼
+ */
+public class LongColumn extends Column {
+
+    private long[] values = new long[INITIAL_CAPACITY];
+
+    public void add(final long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length));
+        }
+        values[size++] = value;
+    }
+
+    public void addNull() {
+        markNull(size);
+        add(0L);
+    }
+
+    /**
+     * index 번째 값. NULL이면 0L
+     */
+    public long get(final int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    @Override
+    public Object getObject(final int index) {
+        return isNull(index) ? null : get(index);
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    public LongStream stream() {
+        return Arrays.stream(values, 0, size);
+    }
+
+    @Override
+    void readFrom(final ResultSet rs, final int columnIndex) throws SQLException {
+        final long value = rs.getLong(columnIndex);
+        if (rs.wasNull()) {
+            addNull();
+        } else {
+            add(value);
+        }
+    }
+
+    @Override
+    LongColumn copy() {
+        final LongColumn copy = new LongColumn();
+        copy.values = Arrays.copyOf(values, values.length);
+        copyStateTo(copy);
+        return copy;
+    }
+}
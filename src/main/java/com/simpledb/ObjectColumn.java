@@ -0,0 +1,42 @@
+package com.simpledb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * 기본형으로 담을 수 없는 값(문자열, 날짜, DECIMAL 등)을 담는 컬럼
+ */
+public class ObjectColumn extends Column {
+
+    private Object[] values = new Object[INITIAL_CAPACITY];
+
+    public void add(final Object value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length));
+        }
+        if (value == null) {
+            markNull(size);
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    public Object getObject(final int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    @Override
+    void readFrom(final ResultSet rs, final int columnIndex) throws SQLException {
+        add(rs.getObject(columnIndex));
+    }
+
+    @Override
+    ObjectColumn copy() {
+        final ObjectColumn copy = new ObjectColumn();
+        copy.values = Arrays.copyOf(values, values.length);
+        copyStateTo(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,246 @@
+package com.simpledb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * 여러 SELECT문을 모아 한 번에 보내고, 결과를 SELECT문마다의 future로 돌려준다
+ * <p>
+ * {@link SimpleDb#setMultiStatements(boolean)}가 켜져 있으면 모은 SQL문을 ';'로 이어 요청 하나로 보내고
+ * 돌아온 결과 집합들을 차례로 읽는다. 꺼져 있으면 커넥션 하나에서 차례로 실행한다.
+ * 한 SQL문이 실패하면 서버가 나머지를 실행하지 않으므로, 아직 결과를 받지 못한 SQL문을 하나씩 다시 실행해
+ * 실패한 SQL문의 future만 {@link SqlExecutionException}으로 끝낸다.
+ * <p>
+ * 쿼리 캐시와 bulk IN chunk 분할은 적용되지 않는다. 한 번만 실행할 수 있다.
+ */
+public final class Pipeline {
+
+    private static final Logger logger = Logger.getLogger(Pipeline.class.getName());
+
+    @FunctionalInterface
+    private interface ResultReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    private record Entry<T>(Sql sql, ResultReader<T> reader, CompletableFuture<T> future) {
+
+        /**
+         * @return 읽은 row 수
+         */
+        long complete(final ResultSet rs) throws SQLException {
+            try {
+                final T result = reader.read(rs);
+                future.complete(result);
+                return Sql.rowCountOf(result);
+            } catch (RuntimeException e) {
+                // entity 변환 실패 등은 이 SQL문만 실패로 처리한다
+                future.completeExceptionally(e);
+                return 0;
+            }
+        }
+    }
+
+    private final SimpleDb simpleDb;
+    private final List<Entry<?>> entries = new ArrayList<>();
+    private boolean executed;
+
+    Pipeline(final SimpleDb simpleDb) {
+        this.simpleDb = simpleDb;
+    }
+
+    /**
+     * @see Sql#selectLong()
+     */
+    public CompletableFuture<Long> selectLong(final Sql sql) {
+        return add(sql, rs -> rs.next() ? rs.getLong(1) : 0L);
+    }
+
+    /**
+     * @see Sql#selectString()
+     */
+    public CompletableFuture<String> selectString(final Sql sql) {
+        return add(sql, rs -> rs.next() ? rs.getString(1) : "");
+    }
+
+    /**
+     * @see Sql#selectLongs()
+     */
+    public CompletableFuture<List<Long>> selectLongs(final Sql sql) {
+        return add(sql, rs -> {
+            final List<Long> resultList = new ArrayList<>();
+            while (rs.next()) {
+                resultList.add(rs.getLong(1));
+            }
+            return resultList;
+        });
+    }
+
+    /**
+     * @see Sql#selectRows()
+     */
+    public CompletableFuture<List<Map<String, Object>>> selectRows(final Sql sql) {
+        return add(sql, rs -> {
+            final List<Map<String, Object>> resultList = new ArrayList<>();
+            final RowSchema schema = RowSchema.of(rs.getMetaData());
+            while (rs.next()) {
+                resultList.add(Row.read(schema, rs));
+            }
+            return resultList;
+        });
+    }
+
+    /**
+     * @see Sql#selectRows(Class)
+     */
+    public <T> CompletableFuture<List<T>> selectRows(final Sql sql, final Class<T> clazz) {
+        return add(sql, rs -> {
+            final List<T> resultList = new ArrayList<>();
+            final EntityMapper<T> mapper = EntityMapper.of(clazz, rs.getMetaData());
+            while (rs.next()) {
+                final T entity = mapper.map(rs);
+                simpleDb.snapshot(entity);
+                resultList.add(entity);
+            }
+            simpleDb.getMetrics().recordRowsMapped(resultList.size());
+            return resultList;
+        });
+    }
+
+    /**
+     * @see Sql#selectRow(Class)
+     * @return 조회된 row가 없으면 null로 끝나는 future
+     */
+    public <T> CompletableFuture<T> selectRow(final Sql sql, final Class<T> clazz) {
+        return add(sql, rs -> {
+            if (!rs.next()) {
+                return null;
+            }
+            final T entity = EntityMapper.of(clazz, rs.getMetaData()).map(rs);
+            simpleDb.snapshot(entity);
+            simpleDb.getMetrics().recordRowsMapped(1);
+            return entity;
+        });
+    }
+
+    /**
+     * @throws IllegalArgumentException SELECT문이 아닌 경우. 실패한 뒤 다시 실행될 수 있으므로 쓰기는 넣을 수 없다
+     * @throws IllegalStateException    바인딩하지 않은 템플릿 인자가 있는 경우
+     */
+    private <T> CompletableFuture<T> add(final Sql sql, final ResultReader<T> reader) {
+        if (executed) {
+            throw new IllegalStateException("Pipeline has already been executed");
+        }
+        final String statement = sql.statement().stripLeading().toUpperCase(Locale.ROOT);
+        if (!statement.startsWith("SELECT") && !statement.startsWith("WITH") && !statement.startsWith("(")) {
+            throw new IllegalArgumentException("Only SELECT statements can be pipelined : " + sql.statement());
+        }
+        sql.checkTemplateParamsBound();
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        entries.add(new Entry<>(sql, reader, future));
+        return future;
+    }
+
+    /**
+     * 모은 SELECT문을 실행하고 future들을 끝낸다. 커넥션을 얻지 못하면 모든 future가 실패로 끝난다
+     */
+    public void execute() {
+        if (executed) {
+            throw new IllegalStateException("Pipeline has already been executed");
+        }
+        executed = true;
+        if (entries.isEmpty()) {
+            return;
+        }
+        PooledConnection pooledConnection = null;
+        try {
+            pooledConnection = simpleDb.acquireReadConnection(entries.stream().anyMatch(entry -> entry.sql().isFromPrimary()));
+            if (entries.size() > 1 && simpleDb.isMultiStatements()) {
+                executePipelined(pooledConnection);
+            }
+            executeEach(pooledConnection);
+        } catch (SQLException e) {
+            simpleDb.recordError(e);
+            for (Entry<?> entry : entries) {
+                entry.future().completeExceptionally(new SqlExecutionException("Failed to execute pipeline", e));
+            }
+        } finally {
+            simpleDb.releaseConnection(pooledConnection);
+        }
+    }
+
+    /**
+     * SQL문들을 요청 하나로 보낸다. 실패하면 결과를 받지 못한 SQL문은 그대로 두고 돌아간다
+     */
+    private void executePipelined(final PooledConnection pooledConnection) {
+        final StringBuilder statement = new StringBuilder();
+        final List<Object> params = new ArrayList<>();
+        for (Entry<?> entry : entries) {
+            if (!statement.isEmpty()) {
+                statement.append(";\n");
+            }
+            statement.append(stripTerminator(entry.sql().statement()));
+            params.addAll(entry.sql().params());
+        }
+        // SQL문마다 다르므로 statement 캐시를 쓰지 않는다
+        try (PreparedStatement psmt = pooledConnection.connection().prepareStatement(statement.toString())) {
+            int paramIndex = 0;
+            for (Entry<?> entry : entries) {
+                paramIndex = entry.sql().bindParams(psmt, paramIndex);
+            }
+            final long startNanos = System.nanoTime();
+            boolean hasResultSet = psmt.execute();
+            long rows = 0;
+            for (Entry<?> entry : entries) {
+                if (!hasResultSet) {
+                    throw new SQLException("Pipelined statement did not return a result set : " + entry.sql().statement());
+                }
+                try (ResultSet rs = psmt.getResultSet()) {
+                    rows += entry.complete(rs);
+                }
+                hasResultSet = psmt.getMoreResults();
+            }
+            // 여러 SQL문을 합친 문장은 EXPLAIN 할 수 없으므로 커넥션을 넘기지 않는다
+            simpleDb.recordExecution(null, StatementType.SELECT, statement.toString(), params, startNanos, rows);
+        } catch (SQLException e) {
+            simpleDb.getMetrics().recordError(e);
+            logger.warning("Failed to execute pipelined statements, executing remaining statements one by one : " + e.getMessage());
+        }
+    }
+
+    /**
+     * 아직 결과를 받지 못한 SQL문을 하나씩 실행한다
+     */
+    private void executeEach(final PooledConnection pooledConnection) {
+        final Connection conn = pooledConnection.connection();
+        for (Entry<?> entry : entries) {
+            if (entry.future().isDone()) {
+                continue;
+            }
+            final Sql sql = entry.sql();
+            try (PreparedStatement psmt = conn.prepareStatement(sql.statement())) {
+                sql.bindParams(psmt, 0);
+                final long startNanos = System.nanoTime();
+                try (ResultSet rs = psmt.executeQuery()) {
+                    final long rows = entry.complete(rs);
+                    simpleDb.recordExecution(pooledConnection, StatementType.SELECT, sql, startNanos, rows);
+                }
+            } catch (SQLException e) {
+                simpleDb.recordError(e);
+                entry.future().completeExceptionally(new SqlExecutionException("Failed to execute pipelined query", e));
+            }
+        }
+    }
+
+    private static String stripTerminator(final String statement) {
+        final String stripped = statement.strip();
+        return stripped.endsWith(";") ? stripped.substring(0, stripped.length() - 1) : stripped;
+    }
+}
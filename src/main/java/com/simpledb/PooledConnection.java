@@ -0,0 +1,99 @@
+package com.simpledb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 커넥션 풀이 관리하는 물리 커넥션과 그 수명 정보
+ * <p>
+ * statement 캐시가 켜져 있으면 같은 SQL문에 대한 PreparedStatement를 커넥션 안에서 재사용한다.
+ */
+class PooledConnection {
+
+    private final Connection connection;
+    private final StatementCache statementCache;
+    /**
+     * 이 커넥션을 빌려준 풀. 풀 밖에서 만든 커넥션은 null
+     */
+    private final ConnectionPool pool;
+    private final long createdAt;
+    private long lastUsedAt;
+
+    PooledConnection(final Connection connection) {
+        this(connection, 0, null);
+    }
+
+    PooledConnection(final Connection connection, final int statementCacheSize, final ConnectionPool pool) {
+        this.connection = connection;
+        this.pool = pool;
+        this.statementCache = statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null;
+        this.createdAt = System.nanoTime();
+        this.lastUsedAt = createdAt;
+    }
+
+    Connection connection() {
+        return connection;
+    }
+
+    ConnectionPool pool() {
+        return pool;
+    }
+
+    /**
+     * PreparedStatement를 얻는다. 사용이 끝나면 {@link #releaseStatement(PreparedStatement)}로 돌려줘야 한다
+     */
+    PreparedStatement prepareStatement(final String sql, final boolean returnGeneratedKeys) throws SQLException {
+        if (statementCache == null) {
+            return createStatement(sql, returnGeneratedKeys);
+        }
+        final StatementCache.Key key = new StatementCache.Key(sql, returnGeneratedKeys);
+        PreparedStatement psmt = statementCache.get(key);
+        if (psmt == null) {
+            psmt = createStatement(sql, returnGeneratedKeys);
+            statementCache.put(key, psmt);
+        }
+        return psmt;
+    }
+
+    /**
+     * 캐시된 statement는 바인딩된 값만 지우고, 캐시를 쓰지 않으면 닫는다
+     */
+    void releaseStatement(final PreparedStatement psmt) throws SQLException {
+        if (psmt == null) {
+            return;
+        }
+        if (statementCache == null) {
+            psmt.close();
+            return;
+        }
+        psmt.clearParameters();
+    }
+
+    long createdAt() {
+        return createdAt;
+    }
+
+    long lastUsedAt() {
+        return lastUsedAt;
+    }
+
+    void touch() {
+        lastUsedAt = System.nanoTime();
+    }
+
+    void close() throws SQLException {
+        if (statementCache != null) {
+            statementCache.clear();
+        }
+        connection.close();
+    }
+
+    private PreparedStatement createStatement(final String sql, final boolean returnGeneratedKeys) throws SQLException {
+        if (returnGeneratedKeys) {
+            return connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        }
+        return connection.prepareStatement(sql);
+    }
+}
@@ -0,0 +1,221 @@
+package com.simpledb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SELECT 결과 캐시
+ * <p>
+ * 최종 SQL문, 바인딩된 인자값과 결과를 읽은 방법으로 결과 row나 값을 저장한다. 크기를 넘으면 가장 오래 사용하지 않은 결과부터, TTL이 지나면 조회할 때 버린다.
+ * 결과마다 읽은 테이블을 기록해 두고, 그 테이블에 쓰기가 일어나면 해당 결과를 모두 무효화한다.
+ * 읽은 테이블을 확실히 알 수 없는 결과(derived table 등)는 {@link #ALL_TABLES}로 기록해 어느 테이블에 쓰기가 일어나도 무효화한다.
+ */
+class QueryCache {
+
+    /**
+     * 모든 테이블을 뜻하는 이름. 읽은 테이블을 알 수 없는 결과와 쓴 테이블을 알 수 없는 SQL문에 쓴다
+     */
+    static final String ALL_TABLES = "*";
+
+    private static final Pattern TABLE_KEYWORD_PATTERN = Pattern.compile(
+            "\\b(?:FROM|JOIN|INTO|UPDATE|TRUNCATE(?:\\s+TABLE)?|TABLE(?:\\s+IF\\s+(?:NOT\\s+)?EXISTS)?)\\b\\s*",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern TABLE_NAME_PATTERN = Pattern.compile("`?([\\w$]+)`?(?:\\.`?([\\w$]+)`?)?");
+    private static final Pattern ALIAS_PATTERN = Pattern.compile("\\s+(?:AS\\s+)?`?([\\w$]+)`?", Pattern.CASE_INSENSITIVE);
+    private static final Set<String> NOT_TABLES = Set.of("select", "table", "ignore", "low_priority", "quick", "dual");
+    /**
+     * 테이블 이름 뒤에 올 수 있지만 별칭이 아닌 단어
+     */
+    private static final Set<String> NOT_ALIASES = Set.of("where", "join", "inner", "left", "right", "cross", "natural",
+            "straight_join", "full", "outer", "on", "using", "set", "group", "order", "limit", "having", "union",
+            "except", "intersect", "values", "value", "select", "for", "lock", "window", "partition", "use", "force",
+            "ignore", "into", "returning");
+
+    /**
+     * @param resultType 캐시한 결과의 타입. 같은 SQL문이라도 결과를 읽는 방법이 다르면 따로 캐시한다
+     */
+    record Key(Class<?> resultType, String sql, List<Object> params) {
+    }
+
+    private record Entry(Object result, Set<String> tables, long expiresAt) {
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<Key>> keysByTable = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    /**
+     * 무효화가 일어날 때마다 증가한다. 조회 도중 무효화가 일어났다면 그 조회 결과는 캐시하지 않는다
+     */
+    private long generation;
+
+    QueryCache(final int maxSize, final long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    static Key keyOf(final Class<?> resultType, final String sql, final List<Object> params) {
+        return new Key(resultType, sql, Arrays.asList(params.toArray()));
+    }
+
+    /**
+     * @return 캐시된 결과, 없거나 만료되었으면 null
+     */
+    synchronized Object get(final Key key) {
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt() > 0) {
+            remove(key, entry);
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result();
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * 조회 결과를 저장한다. 조회를 시작한 뒤(startGeneration 이후) 무효화가 있었다면 오래된 결과일 수 있으므로 저장하지 않는다
+     */
+    synchronized void put(final Key key, final Object result, final Set<String> tables, final long startGeneration) {
+        if (generation != startGeneration) {
+            return;
+        }
+        final Entry previous = entries.remove(key);
+        if (previous != null) {
+            unindex(key, previous);
+        }
+        entries.put(key, new Entry(result, tables, System.nanoTime() + ttlNanos));
+        for (String table : tables) {
+            keysByTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+        }
+        final Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            final Map.Entry<Key, Entry> evicted = eldest.next();
+            eldest.remove();
+            unindex(evicted.getKey(), evicted.getValue());
+            evictions++;
+        }
+    }
+
+    /**
+     * 주어진 테이블을 읽은 결과를 모두 버린다. 테이블을 알 수 없으면 전부 버린다
+     */
+    synchronized void invalidate(final Collection<String> tables) {
+        generation++;
+        if (tables.isEmpty() || tables.contains(ALL_TABLES)) {
+            invalidations += entries.size();
+            entries.clear();
+            keysByTable.clear();
+            return;
+        }
+        final List<String> invalidatedTables = new ArrayList<>(tables);
+        invalidatedTables.add(ALL_TABLES);
+        for (String table : invalidatedTables) {
+            final Set<Key> keys = keysByTable.remove(table);
+            if (keys == null) {
+                continue;
+            }
+            for (Key key : new ArrayList<>(keys)) {
+                final Entry entry = entries.get(key);
+                if (entry != null) {
+                    remove(key, entry);
+                    invalidations++;
+                }
+            }
+        }
+    }
+
+    synchronized QueryCacheStats stats() {
+        return new QueryCacheStats(hits, misses, evictions, invalidations, entries.size());
+    }
+
+    /**
+     * SQL문이 읽거나 쓰는 테이블 이름을 소문자로 뽑는다. 데이터베이스 이름과 backtick은 뗀다
+     * <p>
+     * {@code FROM a x, b y}처럼 별칭이 붙은 목록도 읽는다. FROM, JOIN 뒤에 derived table이 오거나 이름을 읽을 수 없으면
+     * {@link #ALL_TABLES}를 넣는다.
+     */
+    static Set<String> tablesOf(final String sql) {
+        final Set<String> tables = new HashSet<>();
+        final Matcher keyword = TABLE_KEYWORD_PATTERN.matcher(sql);
+        final Matcher name = TABLE_NAME_PATTERN.matcher(sql);
+        final Matcher alias = ALIAS_PATTERN.matcher(sql);
+        while (keyword.find()) {
+            int position = keyword.end();
+            while (true) {
+                if (position >= sql.length() || sql.charAt(position) == '(') {
+                    // derived table, 함수 호출 등 테이블 이름으로 읽을 수 없는 경우
+                    tables.add(ALL_TABLES);
+                    break;
+                }
+                name.region(position, sql.length());
+                if (!name.lookingAt()) {
+                    tables.add(ALL_TABLES);
+                    break;
+                }
+                final String table = (name.group(2) != null ? name.group(2) : name.group(1)).toLowerCase(Locale.ROOT);
+                if (NOT_TABLES.contains(table)) {
+                    break;
+                }
+                tables.add(table);
+                position = name.end();
+                alias.region(position, sql.length());
+                if (alias.lookingAt() && !NOT_ALIASES.contains(alias.group(1).toLowerCase(Locale.ROOT))) {
+                    position = alias.end();
+                }
+                while (position < sql.length() && Character.isWhitespace(sql.charAt(position))) {
+                    position++;
+                }
+                if (position >= sql.length() || sql.charAt(position) != ',') {
+                    break;
+                }
+                position++;
+                while (position < sql.length() && Character.isWhitespace(sql.charAt(position))) {
+                    position++;
+                }
+            }
+        }
+        return tables;
+    }
+
+    private void remove(final Key key, final Entry entry) {
+        entries.remove(key);
+        unindex(key, entry);
+    }
+
+    private void unindex(final Key key, final Entry entry) {
+        for (String table : entry.tables()) {
+            final Set<Key> keys = keysByTable.get(table);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByTable.remove(table);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.simpledb;
+
+/**
+ * 조회 결과 캐시의 누적 통계
+ *
+ * @param hits          캐시에서 결과를 돌려준 횟수
+ * @param misses        캐시에 없어 DB에서 조회한 횟수
+ * @param evictions     크기 제한이나 TTL로 버려진 결과 수
+ * @param invalidations 테이블 쓰기로 무효화된 결과 수
+ * @param size          현재 캐시된 결과 수
+ */
+public record QueryCacheStats(long hits, long misses, long evictions, long invalidations, int size) {
+}
@@ -0,0 +1,111 @@
+package com.simpledb;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 조회 결과를 한 row씩 읽어 오는 iterator
+ * <p>
+ * 결과 전체를 메모리에 올리지 않는다. 끝까지 읽거나 {@link #close()}를 호출하면 ResultSet, statement를 닫고 커넥션을 반납한다.
+ * 커넥션을 붙잡고 있으므로 반드시 try-with-resources 안에서 사용해야 한다.
+ */
+public class ResultIterator<T> implements Iterator<T>, AutoCloseable {
+
+    @FunctionalInterface
+    interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    private final PreparedStatement psmt;
+    private final ResultSet rs;
+    private final RowReader<T> rowReader;
+    private final Runnable releaseConnection;
+    private boolean fetched;
+    private boolean hasNext;
+    private boolean closed;
+
+    ResultIterator(final PreparedStatement psmt, final ResultSet rs, final RowReader<T> rowReader, final Runnable releaseConnection) {
+        this.psmt = psmt;
+        this.rs = rs;
+        this.rowReader = rowReader;
+        this.releaseConnection = releaseConnection;
+    }
+
+    /**
+     * 조회에 실패했을 때 돌려주는 빈 iterator
+     */
+    static <T> ResultIterator<T> empty() {
+        final ResultIterator<T> iterator = new ResultIterator<>(null, null, null, () -> {
+        });
+        iterator.closed = true;
+        return iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!fetched) {
+            try {
+                hasNext = rs.next();
+            } catch (SQLException e) {
+                close();
+                throw new SqlExecutionException("Failed to fetch next row", e);
+            }
+            fetched = true;
+            if (!hasNext) {
+                close();
+            }
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fetched = false;
+        try {
+            return rowReader.read(rs);
+        } catch (SQLException e) {
+            close();
+            throw new SqlExecutionException("Failed to read row", e);
+        }
+    }
+
+    /**
+     * 남은 row를 버리고 자원을 정리한다. 여러 번 호출해도 된다
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            rs.close();
+            psmt.close();
+        } catch (SQLException ignored) {
+            // 커넥션은 반납하면서 정리된다
+        } finally {
+            releaseConnection.run();
+        }
+    }
+
+    /**
+     * 닫힐 때 자원을 정리하는 순차 Stream으로 감싼다
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+}
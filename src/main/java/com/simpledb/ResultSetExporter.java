@@ -0,0 +1,323 @@
+package com.simpledb;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+
+/**
+ * ResultSet의 현재 row를 JSON 또는 CSV로 바로 쓴다
+ * <p>
+ * 컬럼 타입에 맞는 getter로 값을 읽어 Map이나 entity 같은 중간 객체 없이 출력한다. 날짜/시간은 jsr310 모듈로 ISO-8601 문자열,
+ * BIT(1)은 true/false, TEXT는 문자 stream, BLOB은 base64로 쓴다. CSV는 RFC 4180 형식(CRLF 줄바꿈, 큰따옴표 escape)이다.
+ */
+final class ResultSetExporter {
+
+    /**
+     * generator를 닫아도 호출자의 stream은 닫지 않는다
+     */
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build())
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private static final int CHAR_BUFFER_SIZE = 8192;
+
+    private enum Kind {
+        LONG, BIG_INTEGER, DOUBLE, DECIMAL, BOOLEAN, DATETIME, DATE, TIME, TEXT, BINARY, STRING
+    }
+
+    private final String[] labels;
+    private final Kind[] kinds;
+
+    private ResultSetExporter(final String[] labels, final Kind[] kinds) {
+        this.labels = labels;
+        this.kinds = kinds;
+    }
+
+    static ResultSetExporter of(final ResultSetMetaData rsmd) throws SQLException {
+        final int columnCount = rsmd.getColumnCount();
+        final String[] labels = new String[columnCount];
+        final Kind[] kinds = new Kind[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = rsmd.getColumnLabel(i + 1);
+            kinds[i] = kindOf(rsmd, i + 1);
+        }
+        return new ResultSetExporter(labels, kinds);
+    }
+
+    private static Kind kindOf(final ResultSetMetaData rsmd, final int column) throws SQLException {
+        return switch (rsmd.getColumnType(column)) {
+            case Types.BIT -> rsmd.getPrecision(column) <= 1 ? Kind.BOOLEAN : Kind.LONG;
+            case Types.BOOLEAN -> Kind.BOOLEAN;
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> Kind.LONG;
+            case Types.BIGINT -> rsmd.isSigned(column) ? Kind.LONG : Kind.BIG_INTEGER;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> Kind.DOUBLE;
+            case Types.DECIMAL, Types.NUMERIC -> Kind.DECIMAL;
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> Kind.DATETIME;
+            case Types.DATE -> Kind.DATE;
+            case Types.TIME -> Kind.TIME;
+            case Types.LONGVARCHAR, Types.LONGNVARCHAR, Types.CLOB, Types.NCLOB -> Kind.TEXT;
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> Kind.BINARY;
+            default -> Kind.STRING;
+        };
+    }
+
+    /**
+     * 현재 row를 JSON 객체 하나로 쓴다
+     */
+    void writeJson(final ResultSet rs, final JsonGenerator generator) throws SQLException, IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < kinds.length; i++) {
+            generator.writeFieldName(labels[i]);
+            final int column = i + 1;
+            switch (kinds[i]) {
+                case LONG -> {
+                    final long value = rs.getLong(column);
+                    if (rs.wasNull()) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeNumber(value);
+                    }
+                }
+                case DOUBLE -> {
+                    final double value = rs.getDouble(column);
+                    if (rs.wasNull()) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeNumber(value);
+                    }
+                }
+                case BOOLEAN -> {
+                    final boolean value = rs.getBoolean(column);
+                    if (rs.wasNull()) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeBoolean(value);
+                    }
+                }
+                case BIG_INTEGER, DECIMAL -> {
+                    final BigDecimal value = rs.getBigDecimal(column);
+                    if (value == null) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeNumber(value);
+                    }
+                }
+                case TEXT -> {
+                    final Reader reader = rs.getCharacterStream(column);
+                    if (reader == null) {
+                        generator.writeNull();
+                    } else {
+                        try (reader) {
+                            generator.writeString(reader, -1);
+                        }
+                    }
+                }
+                case BINARY -> {
+                    final InputStream in = rs.getBinaryStream(column);
+                    if (in == null) {
+                        generator.writeNull();
+                    } else {
+                        try (in) {
+                            generator.writeBinary(in, -1);
+                        }
+                    }
+                }
+                case DATETIME, DATE, TIME -> generator.writeObject(temporalOf(rs, column, kinds[i]));
+                case STRING -> generator.writeString(rs.getString(column));
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    void writeCsvHeader(final Writer writer) throws IOException {
+        for (int i = 0; i < labels.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCsvString(writer, labels[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * 현재 row를 CSV 한 줄로 쓴다. NULL은 빈 필드로 쓴다
+     */
+    void writeCsv(final ResultSet rs, final Writer writer) throws SQLException, IOException {
+        for (int i = 0; i < kinds.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            final int column = i + 1;
+            switch (kinds[i]) {
+                case LONG -> {
+                    final long value = rs.getLong(column);
+                    if (!rs.wasNull()) {
+                        writer.write(Long.toString(value));
+                    }
+                }
+                case DOUBLE -> {
+                    final double value = rs.getDouble(column);
+                    if (!rs.wasNull()) {
+                        writer.write(Double.toString(value));
+                    }
+                }
+                case BOOLEAN -> {
+                    final boolean value = rs.getBoolean(column);
+                    if (!rs.wasNull()) {
+                        writer.write(value ? "true" : "false");
+                    }
+                }
+                case BIG_INTEGER, DECIMAL -> {
+                    final BigDecimal value = rs.getBigDecimal(column);
+                    if (value != null) {
+                        writer.write(value.toPlainString());
+                    }
+                }
+                case TEXT -> {
+                    final Reader reader = rs.getCharacterStream(column);
+                    if (reader != null) {
+                        try (reader) {
+                            writeCsvQuoted(writer, reader);
+                        }
+                    }
+                }
+                case BINARY -> {
+                    final InputStream in = rs.getBinaryStream(column);
+                    if (in != null) {
+                        // RFC 4180에는 바이너리 표현이 없으므로 JSON과 같이 base64로 쓴다. 값 전체를 메모리에 올리지 않는다
+                        try (in; OutputStream base64 = Base64.getEncoder().wrap(new AsciiWriterOutputStream(writer))) {
+                            in.transferTo(base64);
+                        }
+                    }
+                }
+                case DATETIME, DATE, TIME -> {
+                    final Object value = temporalOf(rs, column, kinds[i]);
+                    if (value != null) {
+                        writer.write(formatTemporal(value));
+                    }
+                }
+                case STRING -> {
+                    final String value = rs.getString(column);
+                    if (value != null) {
+                        writeCsvString(writer, value);
+                    }
+                }
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private static Object temporalOf(final ResultSet rs, final int column, final Kind kind) throws SQLException {
+        return switch (kind) {
+            case DATETIME -> rs.getObject(column, LocalDateTime.class);
+            case DATE -> rs.getObject(column, LocalDate.class);
+            default -> rs.getObject(column, LocalTime.class);
+        };
+    }
+
+    private static String formatTemporal(final Object value) {
+        if (value instanceof LocalDateTime dateTime) {
+            return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(dateTime);
+        }
+        if (value instanceof LocalDate date) {
+            return DateTimeFormatter.ISO_LOCAL_DATE.format(date);
+        }
+        return DateTimeFormatter.ISO_LOCAL_TIME.format((LocalTime) value);
+    }
+
+    /**
+     * 쉼표, 큰따옴표, 줄바꿈이 있으면 큰따옴표로 감싸고 안의 큰따옴표는 두 번 쓴다
+     */
+    private static void writeCsvString(final Writer writer, final String value) throws IOException {
+        boolean needsQuote = false;
+        for (int i = 0; i < value.length() && !needsQuote; i++) {
+            final char c = value.charAt(i);
+            needsQuote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!needsQuote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * 길이를 미리 알 수 없는 TEXT 값은 항상 큰따옴표로 감싸고 읽으면서 escape 한다
+     */
+    private static void writeCsvQuoted(final Writer writer, final Reader reader) throws IOException {
+        final char[] buffer = new char[CHAR_BUFFER_SIZE];
+        writer.write('"');
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '"') {
+                    writer.write(buffer, start, i + 1 - start);
+                    writer.write('"');
+                    start = i + 1;
+                }
+            }
+            writer.write(buffer, start, read - start);
+        }
+        writer.write('"');
+    }
+
+    /**
+     * ASCII byte를 같은 문자로 Writer에 쓰는 OutputStream. base64 encoder의 출력을 받는다.
+     * 닫아도 Writer는 닫지 않는다
+     */
+    private static final class AsciiWriterOutputStream extends OutputStream {
+
+        private final Writer writer;
+        private final char[] buffer = new char[CHAR_BUFFER_SIZE];
+
+        private AsciiWriterOutputStream(final Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            writer.write((char) (b & 0x7f));
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            int written = 0;
+            while (written < length) {
+                final int count = Math.min(length - written, buffer.length);
+                for (int i = 0; i < count; i++) {
+                    buffer[i] = (char) (bytes[offset + written + i] & 0x7f);
+                }
+                writer.write(buffer, 0, count);
+                written += count;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.simpledb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 조회 결과의 row 하나
+ * <p>
+ * 값은 Object[] 하나에 컬럼 순서대로 담고, 컬럼 이름은 같은 조회 결과의 모든 row가 {@link RowSchema}로 공유한다.
+ * 기존 호출부와 호환되도록 {@code Map<String, Object>}로 사용할 수 있다. 있는 컬럼의 값은 배열에서 바로 바꾸고,
+ * 컬럼을 추가하거나 지우면 그때 이 row만의 LinkedHashMap으로 옮겨 담은 뒤 그 Map으로 동작한다.
+ */
+public final class Row extends AbstractMap<String, Object> {
+
+    private static final RowSchema EMPTY_SCHEMA = RowSchema.of(new String[0]);
+
+    private final RowSchema schema;
+    private final Object[] values;
+    /**
+     * 컬럼을 추가하거나 지운 뒤의 내용. 그 전에는 null
+     */
+    private Map<String, Object> promoted;
+
+    Row(final RowSchema schema, final Object[] values) {
+        this.schema = schema;
+        this.values = values;
+    }
+
+    /**
+     * ResultSet의 현재 row를 읽는다
+     */
+    static Row read(final RowSchema schema, final ResultSet rs) throws SQLException {
+        final Object[] values = new Object[schema.columnCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rs.getObject(i + 1);
+        }
+        return new Row(schema, values);
+    }
+
+    /**
+     * 컬럼이 없는 row. selectRow()의 결과가 없을 때 사용한다
+     */
+    static Row empty() {
+        return new Row(EMPTY_SCHEMA, new Object[0]);
+    }
+
+    /**
+     * index 번째 컬럼의 값
+     */
+    public Object get(final int index) {
+        if (promoted != null) {
+            return promoted.get(schema.columnName(index));
+        }
+        return values[index];
+    }
+
+    RowSchema schema() {
+        return schema;
+    }
+
+    /**
+     * 값 배열을 복사한 row. 캐시된 row를 호출한 쪽이 바꿔도 캐시에 영향이 없도록 할 때 사용한다
+     */
+    Row copy() {
+        final Row copy = new Row(schema, values.clone());
+        if (promoted != null) {
+            copy.promoted = new LinkedHashMap<>(promoted);
+        }
+        return copy;
+    }
+
+    Object[] valueArray() {
+        return values;
+    }
+
+    /**
+     * schema의 컬럼과 값을 이 row만의 Map으로 옮긴다
+     */
+    private Map<String, Object> promote() {
+        if (promoted == null) {
+            final Map<String, Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < schema.keyCount(); i++) {
+                map.put(schema.key(i), values[schema.keyValueIndex(i)]);
+            }
+            promoted = map;
+        }
+        return promoted;
+    }
+
+    @Override
+    public Object get(final Object key) {
+        if (promoted != null) {
+            return promoted.get(key);
+        }
+        final int index = schema.indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        if (promoted != null) {
+            return promoted.containsKey(key);
+        }
+        return schema.indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return promoted != null ? promoted.size() : schema.keyCount();
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+        if (promoted != null) {
+            return promoted.put(key, value);
+        }
+        final int index = schema.indexOf(key);
+        if (index < 0) {
+            return promote().put(key, value);
+        }
+        final Object previous = values[index];
+        values[index] = value;
+        return previous;
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        if (promoted == null && schema.indexOf(key) < 0) {
+            return null;
+        }
+        return promote().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        promoted = new LinkedHashMap<>();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (promoted != null) {
+            return promoted.entrySet();
+        }
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int keyIndex;
+                    private boolean removable;
+
+                    @Override
+                    public boolean hasNext() {
+                        return keyIndex < schema.keyCount();
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        removable = true;
+                        return new Entry(keyIndex++);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (!removable) {
+                            throw new IllegalStateException();
+                        }
+                        removable = false;
+                        promote().remove(schema.key(keyIndex - 1));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return Row.this.size();
+            }
+        };
+    }
+
+    private final class Entry implements Map.Entry<String, Object> {
+
+        private final int keyIndex;
+
+        private Entry(final int keyIndex) {
+            this.keyIndex = keyIndex;
+        }
+
+        @Override
+        public String getKey() {
+            return schema.key(keyIndex);
+        }
+
+        @Override
+        public Object getValue() {
+            if (promoted != null) {
+                return promoted.get(getKey());
+            }
+            return values[schema.keyValueIndex(keyIndex)];
+        }
+
+        @Override
+        public Object setValue(final Object value) {
+            if (promoted != null) {
+                return promoted.put(getKey(), value);
+            }
+            final int index = schema.keyValueIndex(keyIndex);
+            final Object previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Map.Entry<?, ?> entry
+                    && getKey().equals(entry.getKey())
+                    && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ Objects.hashCode(getValue());
+        }
+    }
+}
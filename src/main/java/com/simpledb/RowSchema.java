@@ -0,0 +1,79 @@
+package com.simpledb;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 조회 결과 하나에 속한 모든 {@link Row}가 공유하는 컬럼 이름 → 위치 정보
+ * <p>
+ * 이름이 같은 컬럼이 여러 개면 HashMap에 차례로 넣었을 때처럼 마지막 컬럼이 그 이름을 차지한다.
+ */
+final class RowSchema {
+
+    private final String[] columnNames;
+    private final Map<String, Integer> valueIndexes;
+    /**
+     * 중복을 제외한 컬럼 이름과 그 값의 위치. Row의 entry 순회에 사용한다
+     */
+    private final String[] keys;
+    private final int[] keyValueIndexes;
+
+    private RowSchema(final String[] columnNames) {
+        this.columnNames = columnNames;
+        valueIndexes = new HashMap<>();
+        for (int i = 0; i < columnNames.length; i++) {
+            valueIndexes.put(columnNames[i], i);
+        }
+        keys = new String[valueIndexes.size()];
+        keyValueIndexes = new int[valueIndexes.size()];
+        int keyIndex = 0;
+        for (int i = 0; i < columnNames.length; i++) {
+            if (valueIndexes.get(columnNames[i]) == i) {
+                keys[keyIndex] = columnNames[i];
+                keyValueIndexes[keyIndex++] = i;
+            }
+        }
+    }
+
+    static RowSchema of(final ResultSetMetaData rsmd) throws SQLException {
+        final String[] columnNames = new String[rsmd.getColumnCount()];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNames[i] = rsmd.getColumnName(i + 1);
+        }
+        return of(columnNames);
+    }
+
+    static RowSchema of(final String[] columnNames) {
+        return new RowSchema(columnNames);
+    }
+
+    int columnCount() {
+        return columnNames.length;
+    }
+
+    String columnName(final int index) {
+        return columnNames[index];
+    }
+
+    /**
+     * @return 컬럼 이름에 해당하는 값의 위치, 없으면 -1
+     */
+    int indexOf(final Object columnName) {
+        final Integer index = valueIndexes.get(columnName);
+        return index == null ? -1 : index;
+    }
+
+    int keyCount() {
+        return keys.length;
+    }
+
+    String key(final int keyIndex) {
+        return keys[keyIndex];
+    }
+
+    int keyValueIndex(final int keyIndex) {
+        return keyValueIndexes[keyIndex];
+    }
+}
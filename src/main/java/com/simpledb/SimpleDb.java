@@ -1,7 +1,25 @@
 package com.simpledb;
 
+import java.lang.management.ManagementFactory;
 import java.sql.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 public class SimpleDb {
 
@@ -9,30 +27,156 @@ public class SimpleDb {
     private final String user;
     private final String password;
     private final String database;
-    private boolean devMode;
-    private boolean autoCommit;
-    private Connection conn;
+    private volatile boolean devMode;
+    private volatile boolean serverPreparedStatements;
+    private volatile boolean cursorFetch;
+    private volatile boolean multiStatements;
+    private volatile int batchSize = 1000;
+    private volatile IsolationLevel transactionIsolation;
+    private volatile int transactionMaxRetries = 3;
+    private volatile long transactionRetryBackoffMillis = 20;
+    private final ConnectionPool.ConnectionFactory connectionFactory;
+    private final ConnectionPool connectionPool;
+    /**
+     * 읽기 전용 복제 서버의 커넥션 풀. 트랜잭션 밖의 SELECT를 돌아가며 나눠 받는다
+     */
+    private final List<ConnectionPool> replicaPools = new CopyOnWriteArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private volatile AsyncSqlExecutor asyncExecutor;
+    private volatile ForkJoinPool partitionPool;
+    private volatile QueryCache queryCache;
+    private final SqlMetrics metrics;
+    private volatile SlowQueryLog slowQueryLog;
+    private volatile EntitySnapshots entitySnapshots;
+    private volatile WriteBehindBuffer writeBehindBuffer;
+    private volatile ObjectName metricsMBeanName;
+    /**
+     * 현재 스레드의 트랜잭션 상태. 트랜잭션 커넥션과 함께 만들어지고 지워진다
+     */
+    private final ThreadLocal<TransactionState> transactionState = new ThreadLocal<>();
+    /**
+     * 스레드마다 따로 관리되는 트랜잭션 커넥션. 한 스레드에서 시작한 트랜잭션은 그 스레드에서만 commit/rollback 된다
+     */
+    private final ThreadLocal<PooledConnection> transactionConnection = new ThreadLocal<>();
     private final Logger logger = Logger.getLogger(this.getClass().getName());
 
+    private static final class TransactionState {
+        /**
+         * 트랜잭션 안에서 쓰기가 일어난 테이블. commit 할 때 한 번 더 캐시를 무효화한다
+         */
+        private final Set<String> writtenTables = new HashSet<>();
+        /**
+         * 현재 트랜잭션(또는 savepoint) 블록 안에서 처음 실패한 SQL문의 예외
+         */
+        private SQLException failure;
+        /**
+         * 트랜잭션이 끝나면 되돌릴 격리 수준. 바꾸지 않았으면 -1
+         */
+        private int previousIsolation = -1;
+    }
+
     public SimpleDb(final String url, final String user, final String password, final String database) {
         this.url = url;
         this.user = user;
         this.password = password;
         this.database = database;
-        autoCommit = true;
+        connectionFactory = () -> DriverManager.getConnection(jdbcUrl(url, database));
+        connectionPool = new ConnectionPool(() -> createConnection(connectionFactory, database));
+        metrics = new SqlMetrics(this::getActiveConnectionCount, this::getIdleConnectionCount);
+    }
+
+    /**
+     * MySQL 대신 주어진 방법으로 커넥션을 여는 SimpleDb. 벤치마크에서 내장 DB로 실행할 때 사용한다
+     */
+    SimpleDb(final String database, final ConnectionPool.ConnectionFactory connectionFactory) {
+        this.url = null;
+        this.user = null;
+        this.password = null;
+        this.database = database;
+        this.connectionFactory = connectionFactory;
+        connectionPool = new ConnectionPool(() -> createConnection(connectionFactory, database));
+        metrics = new SqlMetrics(this::getActiveConnectionCount, this::getIdleConnectionCount);
     }
 
-    private synchronized void connectDb() {
+    /**
+     * 커넥션 풀에 새 물리 커넥션을 연다
+     */
+    private Connection createConnection(final ConnectionPool.ConnectionFactory factory, final String databaseName)
+            throws SQLException {
         try {
-            conn = DriverManager.getConnection("jdbc:mysql://%s/%s?user=%s&password=%s".formatted(url, database, user, password));
-            conn.setAutoCommit(autoCommit);
+            final Connection conn = factory.create();
             if (devMode) {
-                logConnected();
+                logConnected(databaseName);
             }
+            return conn;
         } catch (SQLException e) {
             if (devMode) {
                 logSqlExceptionMessage(e);
             }
+            throw e;
+        }
+    }
+
+    private String jdbcUrl(final String host, final String databaseName) {
+        final StringBuilder jdbcUrl = new StringBuilder("jdbc:mysql://%s/%s?user=%s&password=%s".formatted(host, databaseName, user, password));
+        // 배치로 실행한 INSERT를 드라이버가 여러 row짜리 INSERT 하나로 합쳐서 보낸다
+        jdbcUrl.append("&rewriteBatchedStatements=true");
+        if (serverPreparedStatements) {
+            jdbcUrl.append("&useServerPrepStmts=true");
+        }
+        if (cursorFetch) {
+            jdbcUrl.append("&useCursorFetch=true");
+        }
+        if (multiStatements) {
+            jdbcUrl.append("&allowMultiQueries=true");
+        }
+        return jdbcUrl.toString();
+    }
+
+    /**
+     * SQL 실행에 사용할 커넥션을 얻는다. 현재 스레드가 트랜잭션 중이면 트랜잭션 커넥션을 돌려준다
+     */
+    PooledConnection acquireConnection() throws SQLException {
+        final PooledConnection txConnection = transactionConnection.get();
+        if (txConnection != null) {
+            return txConnection;
+        }
+        final long startNanos = System.nanoTime();
+        final PooledConnection pooledConnection = connectionPool.borrow();
+        metrics.recordConnectionAcquire(System.nanoTime() - startNanos);
+        return pooledConnection;
+    }
+
+    /**
+     * {@link #acquireConnection()}로 얻은 커넥션을 돌려준다. 트랜잭션 커넥션은 commit/rollback 전까지 유지한다
+     */
+    void releaseConnection(final PooledConnection pooledConnection) {
+        if (pooledConnection != null && pooledConnection != transactionConnection.get()) {
+            pooledConnection.pool().release(pooledConnection);
+        }
+    }
+
+    /**
+     * SELECT 실행에 사용할 커넥션을 얻는다
+     * <p>
+     * 트랜잭션 중이면 트랜잭션 커넥션을, fromPrimary 이거나 복제 서버가 없으면 주 서버 커넥션을 돌려준다.
+     * 그 밖에는 복제 서버를 돌아가며 고르고, 복제 서버에서 커넥션을 얻지 못하면 주 서버를 사용한다.
+     */
+    PooledConnection acquireReadConnection(final boolean fromPrimary) throws SQLException {
+        if (fromPrimary || replicaPools.isEmpty() || transactionConnection.get() != null) {
+            return acquireConnection();
+        }
+        final List<ConnectionPool> replicas = replicaPools;
+        final ConnectionPool replica = replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+        final long startNanos = System.nanoTime();
+        try {
+            final PooledConnection pooledConnection = replica.borrow();
+            metrics.recordConnectionAcquire(System.nanoTime() - startNanos);
+            return pooledConnection;
+        } catch (SQLException e) {
+            metrics.recordError(e);
+            logger.warning("Failed to borrow a replica connection, falling back to primary : " + e.getMessage());
+            return acquireConnection();
         }
     }
 
@@ -40,70 +184,626 @@ public class SimpleDb {
      * SQL문을 실행한다
      */
     public void run(final String statement) {
-        Statement stmt = null;
+        PooledConnection pooledConnection = null;
         try {
-            connectDb();
-            stmt = conn.createStatement();
-            stmt.execute(statement);
+            pooledConnection = acquireConnection();
+            final long startNanos = System.nanoTime();
+            try (Statement stmt = pooledConnection.connection().createStatement()) {
+                stmt.execute(statement);
+            }
+            recordExecution(pooledConnection, StatementType.RUN, statement, List.of(), startNanos, 0);
         } catch (SQLException e) {
+            recordError(e);
             logSqlExceptionMessage(e);
         } finally {
-            if (stmt != null) {
-                try {
-                    stmt.close();
-                    conn.close();
-                } catch (SQLException e) {
-                    if (devMode) {
-                        logger.warning("Failed to close PreparedStatement: " + e.getMessage());
-                    }
-                }
-            }
+            releaseConnection(pooledConnection);
+            invalidateQueryCache(statement);
         }
     }
 
     public void run(final String statement, final Object... objects) {
-        PreparedStatement psmt = null;
+        PooledConnection pooledConnection = null;
         try {
-            connectDb();
-            psmt = conn.prepareStatement(statement);
-            for(int i = 0; i < objects.length; i++) {
-                psmt.setObject(i + 1, objects[i]);
+            pooledConnection = acquireConnection();
+            final PreparedStatement psmt = pooledConnection.prepareStatement(statement, false);
+            try {
+                for (int i = 0; i < objects.length; i++) {
+                    Sql.bindParam(psmt, i + 1, objects[i]);
+                }
+                final long startNanos = System.nanoTime();
+                psmt.execute();
+                recordExecution(pooledConnection, StatementType.RUN, statement, objects, startNanos, 0);
+            } finally {
+                pooledConnection.releaseStatement(psmt);
             }
-            psmt.execute();
         } catch (SQLException e) {
+            recordError(e);
             logSqlExceptionMessage(e);
         } finally {
-            if (psmt != null) {
-                try {
-                    psmt.close();
-                    conn.close();
-                } catch (SQLException e) {
-                    if (devMode) {
-                        logger.warning("Failed to close PreparedStatement: " + e.getMessage());
-                    }
-                }
-            }
+            releaseConnection(pooledConnection);
+            invalidateQueryCache(statement);
         }
     }
 
+    /**
+     * INSERT문을 바로 실행하지 않고 모아서 쓰는 write-behind 버퍼를 켠다. 실패한 row는 경고로 남긴다
+     *
+     * @param capacity      큐에 담아 둘 최대 row 수
+     * @param maxRows       INSERT문 하나로 합칠 최대 row 수
+     * @param flushInterval 첫 row가 들어온 뒤 쓰기까지 기다리는 최대 시간
+     */
+    public void enableWriteBehind(final int capacity, final int maxRows, final Duration flushInterval) {
+        enableWriteBehind(capacity, maxRows, flushInterval, failure -> logger.warning(
+                "Failed to write %d rows behind : %s".formatted(failure.rows().size(), failure.cause().getMessage())));
+    }
+
+    /**
+     * write-behind 버퍼를 켠다. 쓰기에 실패하면 실패한 묶음마다 failureHandler를 호출한다
+     * <p>
+     * 이미 켜져 있던 버퍼는 남은 row를 모두 쓴 뒤 닫는다.
+     */
+    public void enableWriteBehind(final int capacity, final int maxRows, final Duration flushInterval,
+                                  final Consumer<WriteBehindFailure> failureHandler) {
+        final WriteBehindBuffer previous = writeBehindBuffer;
+        writeBehindBuffer = new WriteBehindBuffer(this, capacity, maxRows, flushInterval.toMillis(), failureHandler);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * INSERT문을 write-behind 버퍼에 넣는다. 큐가 가득 차 있으면 자리가 날 때까지 기다린다
+     * <p>
+     * 같은 SQL문끼리 {@code INSERT ... VALUES (...), (...)} 하나로 합쳐 백그라운드에서 실행되며, 호출한 스레드의 트랜잭션과는 무관하다.
+     *
+     * @return 큐에 넣었으면 true, 기다리다 인터럽트되면 false
+     */
+    public boolean runBehind(final String statement, final Object... objects) {
+        try {
+            writeBehind().put(statement, objects);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * INSERT문을 write-behind 버퍼에 넣는다. 기다리지 않는다
+     *
+     * @return 큐가 가득 차서 넣지 못했으면 false
+     */
+    public boolean tryRunBehind(final String statement, final Object... objects) {
+        return writeBehind().offer(statement, objects);
+    }
+
+    /**
+     * 지금까지 write-behind 버퍼에 넣은 row를 모두 쓸 때까지 기다린다
+     */
+    public void flushWriteBehind() {
+        try {
+            writeBehind().flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private WriteBehindBuffer writeBehind() {
+        final WriteBehindBuffer buffer = writeBehindBuffer;
+        if (buffer == null) {
+            throw new IllegalStateException("Write-behind is not enabled");
+        }
+        return buffer;
+    }
+
+    /**
+     * 같은 SQL문을 인자만 바꿔 한 번에 실행한다
+     *
+     * @param statement 실행할 SQL문
+     * @param batchParams row마다 바인딩할 인자값
+     * @return AUTO_INCREMENT 에 의해서 생성된 주키들
+     */
+    public long[] runBatch(final String statement, final List<Object[]> batchParams) {
+        final Sql sql = genSql().append(statement);
+        for (Object[] objects : batchParams) {
+            sql.addBatch(objects);
+        }
+        return sql.executeBatch();
+    }
+
+    /**
+     * 읽기 전용 복제 서버를 추가한다. 주 서버와 같은 사용자, 데이터베이스로 접속한다
+     * <p>
+     * 트랜잭션 밖에서 실행하는 Sql의 SELECT는 복제 서버들이 돌아가며 처리하고, 쓰기와 트랜잭션은 주 서버에서 실행된다.
+     * 방금 쓴 내용을 읽어야 하면 {@link Sql#fromPrimary()}를 사용한다. 커넥션 풀 설정은 주 서버와 같다.
+     *
+     * @param url 복제 서버 주소
+     */
+    public void addReplica(final String url) {
+        addReplica(url, database);
+    }
+
+    /**
+     * 데이터베이스 이름이 다른 읽기 전용 복제 서버를 추가한다
+     */
+    public void addReplica(final String url, final String database) {
+        addReplica(() -> DriverManager.getConnection(jdbcUrl(url, database)), database);
+    }
+
+    void addReplica(final ConnectionPool.ConnectionFactory replicaFactory, final String replicaDatabase) {
+        final ConnectionPool replicaPool = new ConnectionPool(() -> createConnection(replicaFactory, replicaDatabase));
+        replicaPool.copySettingsFrom(connectionPool);
+        replicaPools.add(replicaPool);
+    }
+
     public void setDevMode(final boolean devMode) {
         this.devMode = devMode;
     }
 
+    /**
+     * 커넥션 풀의 최소 유휴 커넥션 수와 최대 커넥션 수를 설정한다
+     */
+    public void setPoolSize(final int minIdle, final int maxSize) {
+        for (ConnectionPool pool : allPools()) {
+            pool.setPoolSize(minIdle, maxSize);
+        }
+        synchronized (this) {
+            if (asyncExecutor != null) {
+                asyncExecutor.resize(maxSize);
+            }
+            if (partitionPool != null) {
+                // 스레드 수를 바꿀 수 없으므로 다음 범위 조회 때 새 크기로 다시 만든다. 실행 중인 범위는 끝까지 실행된다
+                partitionPool.shutdown();
+                partitionPool = null;
+            }
+        }
+    }
+
+    /**
+     * 풀이 가득 찼을 때 커넥션 반납을 기다리는 최대 시간
+     */
+    public void setConnectionTimeout(final Duration connectionTimeout) {
+        for (ConnectionPool pool : allPools()) {
+            pool.setBorrowTimeoutMillis(connectionTimeout.toMillis());
+        }
+    }
+
+    /**
+     * 이 시간보다 오래 쉰 커넥션은 최소 유휴 커넥션 수를 넘는 만큼 닫는다. 0이면 닫지 않는다
+     */
+    public void setIdleTimeout(final Duration idleTimeout) {
+        for (ConnectionPool pool : allPools()) {
+            pool.setIdleTimeoutMillis(idleTimeout.toMillis());
+        }
+    }
+
+    /**
+     * 커넥션의 최대 수명. 수명이 다한 커넥션은 반납될 때 닫는다. 0이면 제한하지 않는다
+     */
+    public void setMaxLifetime(final Duration maxLifetime) {
+        for (ConnectionPool pool : allPools()) {
+            pool.setMaxLifetimeMillis(maxLifetime.toMillis());
+        }
+    }
+
+    /**
+     * 커넥션을 빌려줄 때 수행하는 유효성 검사의 제한 시간
+     */
+    public void setValidationTimeout(final Duration validationTimeout) {
+        for (ConnectionPool pool : allPools()) {
+            pool.setValidationTimeoutSeconds((int) Math.max(1, validationTimeout.toSeconds()));
+        }
+    }
+
+    /**
+     * 커넥션마다 캐시할 PreparedStatement 개수. 0이면 캐시하지 않는다. 이후에 여는 커넥션부터 적용된다
+     */
+    public void setStatementCacheSize(final int statementCacheSize) {
+        for (ConnectionPool pool : allPools()) {
+            pool.setStatementCacheSize(statementCacheSize);
+        }
+    }
+
+    /**
+     * MySQL 서버 측 prepared statement 사용 여부. statement 캐시와 함께 쓰면 같은 SQL문을 서버가 다시 파싱하지 않는다
+     * <p>
+     * 이후에 여는 커넥션부터 적용되므로 SQL을 실행하기 전에 설정해야 한다
+     */
+    public void setServerPreparedStatements(final boolean serverPreparedStatements) {
+        this.serverPreparedStatements = serverPreparedStatements;
+    }
+
+    /**
+     * 스트리밍 조회에서 {@link Sql#fetchSize(int)}로 지정한 양수 fetch size를 서버 커서로 처리할지 여부
+     * <p>
+     * 이후에 여는 커넥션부터 적용되므로 SQL을 실행하기 전에 설정해야 한다
+     */
+    public void setCursorFetch(final boolean cursorFetch) {
+        this.cursorFetch = cursorFetch;
+    }
+
+    /**
+     * {@link #pipeline()}이 여러 SELECT문을 ';'로 이어 요청 하나로 보낼지 여부
+     * <p>
+     * 커넥션에서 여러 문장을 한 번에 실행할 수 있게 되므로, 사용자 입력을 SQL문에 직접 이어 붙이는 곳이 없을 때만 켠다.
+     * 이후에 여는 커넥션부터 적용되므로 SQL을 실행하기 전에 설정해야 한다
+     */
+    public void setMultiStatements(final boolean multiStatements) {
+        this.multiStatements = multiStatements;
+    }
+
+    boolean isMultiStatements() {
+        return multiStatements;
+    }
+
+    /**
+     * 배치 실행에서 executeBatch 한 번에 보낼 최대 row 수
+     */
+    public void setBatchSize(final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size : " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * SELECT 결과 캐시를 켠다. 최종 SQL문과 인자값이 같은 조회는 DB 대신 캐시에서 결과를 돌려준다
+     * <p>
+     * 조회가 읽은 테이블에 SimpleDb를 통한 쓰기가 일어나면 그 결과는 자동으로 무효화된다.
+     * 다른 애플리케이션의 쓰기는 알 수 없으므로 ttl이 지나야 반영된다.
+     *
+     * @param maxSize 캐시할 최대 결과 수
+     * @param ttl     결과를 캐시해 두는 최대 시간
+     */
+    public void enableQueryCache(final int maxSize, final Duration ttl) {
+        queryCache = new QueryCache(maxSize, ttl.toMillis());
+    }
+
+    public void disableQueryCache() {
+        queryCache = null;
+    }
+
+    /**
+     * @return 조회 결과 캐시의 누적 통계. 캐시가 꺼져 있으면 모두 0
+     */
+    public QueryCacheStats getQueryCacheStats() {
+        final QueryCache cache = queryCache;
+        return cache == null ? new QueryCacheStats(0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    /**
+     * @return SQL 실행 지표. 항상 기록되며 SimpleDb마다 하나다
+     */
+    public SqlMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 실행 지표를 플랫폼 MBeanServer에 {@code com.simpledb:type=SimpleDb,name=<database>}로 등록한다.
+     * {@link #shutdown()} 할 때 등록을 해제한다
+     */
+    public void registerMetricsMBean() {
+        try {
+            final ObjectName name = new ObjectName("com.simpledb:type=SimpleDb,name=" + ObjectName.quote(database));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            metricsMBeanName = name;
+        } catch (JMException e) {
+            logger.warning("Failed to register metrics MBean : " + e.getMessage());
+        }
+    }
+
+    /**
+     * 실행 시간이 threshold 이상인 SQL문을 SQL문, 인자값, 실행 시간, row 수와 함께 경고로 남긴다
+     */
+    public void enableSlowQueryLog(final Duration threshold) {
+        slowQueryLog = new SlowQueryLog(threshold.toMillis(), false, 0);
+    }
+
+    /**
+     * 느린 SQL문을 기록하면서 같은 커넥션에서 EXPLAIN 한 실행 계획도 남긴다
+     *
+     * @param threshold       기록할 최소 실행 시간
+     * @param explainInterval EXPLAIN을 실행하는 최소 간격. 그 사이의 느린 SQL문은 실행 계획 없이 기록한다
+     */
+    public void enableSlowQueryLog(final Duration threshold, final Duration explainInterval) {
+        slowQueryLog = new SlowQueryLog(threshold.toMillis(), true, explainInterval.toMillis());
+    }
+
+    public void disableSlowQueryLog() {
+        slowQueryLog = null;
+    }
+
+    /**
+     * SQL문 하나의 실행을 지표에 기록하고, 느린 SQL문이면 로그를 남긴다
+     *
+     * @param pooledConnection SQL문을 실행한 커넥션. 결과를 아직 읽는 중이라 다른 SQL문을 실행할 수 없으면 null
+     */
+    void recordExecution(final PooledConnection pooledConnection, final StatementType type, final String statement,
+                         final List<Object> params, final long startNanos, final long rows) {
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        metrics.recordStatement(type, elapsedNanos, rows);
+        final SlowQueryLog log = slowQueryLog;
+        if (log != null && log.isSlow(elapsedNanos)) {
+            log.log(pooledConnection, statement, params, elapsedNanos, rows);
+        }
+    }
+
+    /**
+     * Sql을 받는 {@link #recordExecution(PooledConnection, StatementType, String, List, long, long)}.
+     * 인자값 List는 느린 SQL문을 기록할 때만 만든다
+     */
+    void recordExecution(final PooledConnection pooledConnection, final StatementType type, final Sql sql,
+                         final long startNanos, final long rows) {
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        metrics.recordStatement(type, elapsedNanos, rows);
+        final SlowQueryLog log = slowQueryLog;
+        if (log != null && log.isSlow(elapsedNanos)) {
+            log.log(pooledConnection, sql.statement(), sql.params(), elapsedNanos, rows);
+        }
+    }
+
+    /**
+     * 인자값 배열을 받는 {@link #recordExecution(PooledConnection, StatementType, String, List, long, long)}.
+     * 인자값 List는 느린 SQL문을 기록할 때만 만든다
+     */
+    private void recordExecution(final PooledConnection pooledConnection, final StatementType type, final String statement,
+                                 final Object[] params, final long startNanos, final long rows) {
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        metrics.recordStatement(type, elapsedNanos, rows);
+        final SlowQueryLog log = slowQueryLog;
+        if (log != null && log.isSlow(elapsedNanos)) {
+            log.log(pooledConnection, statement, Arrays.asList(params), elapsedNanos, rows);
+        }
+    }
+
+    QueryCache queryCache() {
+        return queryCache;
+    }
+
+    boolean isInTransaction() {
+        return transactionConnection.get() != null;
+    }
+
+    /**
+     * SQL문이 쓰는 테이블을 읽은 캐시 결과를 무효화한다. 트랜잭션 중이면 commit 할 때 한 번 더 무효화한다
+     */
+    void invalidateQueryCache(final String statement) {
+        final QueryCache cache = queryCache;
+        if (cache == null) {
+            return;
+        }
+        final Set<String> tables = QueryCache.tablesOf(statement);
+        cache.invalidate(tables);
+        final TransactionState state = transactionState.get();
+        if (state != null) {
+            if (tables.isEmpty()) {
+                // 테이블을 알 수 없는 쓰기는 commit 때 캐시 전체를 무효화한다
+                state.writtenTables.add("*");
+            }
+            state.writtenTables.addAll(tables);
+        }
+    }
+
     public Sql genSql() {
-        connectDb();
-        return new Sql(conn);
+        return new Sql(this);
+    }
+
+    /**
+     * 여러 SELECT문을 모아 한 번에 실행하는 pipeline을 만든다. 현재 스레드가 트랜잭션 중이면 트랜잭션 커넥션에서 실행된다
+     */
+    public Pipeline pipeline() {
+        return new Pipeline(this);
+    }
+
+    /**
+     * 조회하거나 저장한 entity의 컬럼 값을 기억해 두고, {@link #update(Object)}에서 바뀐 컬럼만 UPDATE 한다
+     * <p>
+     * 사본은 entity 객체가 GC 될 때까지 유지되므로 필요한 경우에만 켠다.
+     */
+    public void setDirtyChecking(final boolean dirtyChecking) {
+        entitySnapshots = dirtyChecking ? new EntitySnapshots() : null;
+    }
+
+    boolean isDirtyChecking() {
+        return entitySnapshots != null;
+    }
+
+    /**
+     * entity를 INSERT 한다. 테이블은 클래스 이름을 소문자로 바꾼 것이고, getter가 있는 필드를 같은 이름의 컬럼에 저장한다
+     * <p>
+     * id 필드가 비어 있으면(기본 타입이면 0이면) AUTO_INCREMENT로 생성된 주키를 entity에 넣는다.
+     * dirty checking을 위한 사본은 INSERT가 성공한 경우에만 만든다.
+     *
+     * @return AUTO_INCREMENT 에 의해서 생성된 주키, id를 직접 지정했거나 실패하면 0
+     */
+    public <T> long save(final T entity) {
+        final EntityMetadata<T> metadata = metadataOf(entity);
+        final Object id = metadata.id(entity);
+        final Sql sql = genSql().append(insertStatement(metadata, id != null), insertParams(metadata, entity, id));
+        if (id != null) {
+            if (sql.insertRows() > 0) {
+                snapshot(entity);
+            }
+            return 0;
+        }
+        final long generatedId = sql.insert();
+        if (generatedId != 0) {
+            metadata.setId(entity, generatedId);
+            snapshot(entity);
+        }
+        return generatedId;
+    }
+
+    /**
+     * 같은 클래스의 entity들을 배치로 INSERT 한다. 드라이버가 여러 row짜리 INSERT로 합쳐서 보낸다
+     *
+     * @return 입력 순서대로의 생성된 주키. id를 직접 지정한 entity는 0
+     */
+    public <T> long[] saveAll(final List<T> entities) {
+        final long[] generatedIds = new long[entities.size()];
+        if (entities.isEmpty()) {
+            return generatedIds;
+        }
+        final EntityMetadata<T> metadata = metadataOf(entities.get(0));
+        final List<Object[]> withIdRows = new ArrayList<>();
+        final List<T> withIdEntities = new ArrayList<>();
+        final List<Object[]> withoutIdRows = new ArrayList<>();
+        final List<Integer> withoutIdIndexes = new ArrayList<>();
+        for (int i = 0; i < entities.size(); i++) {
+            final T entity = entities.get(i);
+            if (entity.getClass() != entities.get(0).getClass()) {
+                throw new IllegalArgumentException("saveAll requires entities of the same class");
+            }
+            final Object id = metadata.id(entity);
+            if (id == null) {
+                withoutIdRows.add(insertParams(metadata, entity, null));
+                withoutIdIndexes.add(i);
+            } else {
+                withIdRows.add(insertParams(metadata, entity, id));
+                withIdEntities.add(entity);
+            }
+        }
+        if (!withIdRows.isEmpty()) {
+            runBatch(insertStatement(metadata, true), withIdRows);
+            withIdEntities.forEach(this::snapshot);
+        }
+        if (!withoutIdRows.isEmpty()) {
+            final long[] ids = runBatch(insertStatement(metadata, false), withoutIdRows);
+            for (int i = 0; i < ids.length && i < withoutIdIndexes.size(); i++) {
+                if (ids[i] == 0) {
+                    continue;
+                }
+                final int index = withoutIdIndexes.get(i);
+                metadata.setId(entities.get(index), ids[i]);
+                generatedIds[index] = ids[i];
+                snapshot(entities.get(index));
+            }
+        }
+        return generatedIds;
+    }
+
+    /**
+     * entity를 주키로 찾아 UPDATE 한다
+     * <p>
+     * dirty checking이 켜져 있고 조회하거나 저장한 entity면 바뀐 컬럼만 쓰고, 바뀐 컬럼이 없으면 실행하지 않는다.
+     * 그 밖에는 모든 컬럼을 쓴다.
+     *
+     * @return 수정된 row 개수
+     * @throws IllegalArgumentException entity에 id가 없는 경우
+     */
+    public <T> int update(final T entity) {
+        final EntityMetadata<T> metadata = metadataOf(entity);
+        final Object id = metadata.id(entity);
+        if (id == null) {
+            throw new IllegalArgumentException("Entity without id cannot be updated : " + entity.getClass().getName());
+        }
+        final Object[] values = metadata.values(entity);
+        final EntitySnapshots snapshots = entitySnapshots;
+        final Object[] snapshot = snapshots == null ? null : snapshots.get(entity);
+
+        final StringBuilder statement = new StringBuilder("UPDATE `").append(metadata.table()).append("` SET ");
+        final List<Object> params = new ArrayList<>();
+        final String[] columns = metadata.columns();
+        for (int i = 0; i < columns.length; i++) {
+            if (snapshot != null && Objects.deepEquals(snapshot[i], values[i])) {
+                continue;
+            }
+            if (!params.isEmpty()) {
+                statement.append(", ");
+            }
+            statement.append('`').append(columns[i]).append("` = ?");
+            params.add(values[i]);
+        }
+        if (params.isEmpty()) {
+            return 0;
+        }
+        statement.append(" WHERE `id` = ?");
+        params.add(id);
+        final int updatedCount = genSql().append(statement.toString(), params.toArray()).update();
+        if (snapshots != null && updatedCount > 0) {
+            snapshots.put(entity, values);
+        }
+        return updatedCount;
+    }
+
+    /**
+     * dirty checking이 켜져 있으면 entity의 현재 컬럼 값을 기억해 둔다
+     */
+    <T> void snapshot(final T entity) {
+        final EntitySnapshots snapshots = entitySnapshots;
+        if (snapshots != null && entity != null) {
+            snapshots.put(entity, metadataOf(entity).values(entity));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> EntityMetadata<T> metadataOf(final T entity) {
+        return (EntityMetadata<T>) EntityMetadata.of(entity.getClass());
     }
 
+    private static String insertStatement(final EntityMetadata<?> metadata, final boolean withId) {
+        final StringBuilder statement = new StringBuilder("INSERT INTO `").append(metadata.table()).append("` (");
+        final StringBuilder placeholders = new StringBuilder();
+        if (withId) {
+            statement.append("`id`, ");
+            placeholders.append("?, ");
+        }
+        final String[] columns = metadata.columns();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                statement.append(", ");
+                placeholders.append(", ");
+            }
+            statement.append('`').append(columns[i]).append('`');
+            placeholders.append('?');
+        }
+        return statement.append(") VALUES (").append(placeholders).append(')').toString();
+    }
+
+    private static <T> Object[] insertParams(final EntityMetadata<T> metadata, final T entity, final Object id) {
+        final Object[] values = metadata.values(entity);
+        if (id == null) {
+            return values;
+        }
+        final Object[] params = new Object[values.length + 1];
+        params[0] = id;
+        System.arraycopy(values, 0, params, 1, values.length);
+        return params;
+    }
+
+    /**
+     * 미리 해석된 템플릿으로 Sql을 만든다. 템플릿은 여러 스레드가 공유하고, Sql은 실행마다 새로 만든다
+     */
+    public Sql genSql(final SqlTemplate template) {
+        return new Sql(this, template);
+    }
+
+    /**
+     * 현재 스레드의 트랜잭션을 시작한다. commit 또는 rollback 전까지 이 스레드의 모든 SQL이 하나의 커넥션에서 실행된다
+     */
     public void startTransaction() {
-        autoCommit = false;
+        if (transactionConnection.get() != null) {
+            return;
+        }
+        try {
+            beginTransaction(transactionIsolation);
+        } catch (SQLException e) {
+            metrics.recordError(e);
+            if (devMode) {
+                logSqlExceptionMessage(e);
+            }
+        }
     }
 
     public void commit() {
         try {
-            conn.commit();
-            autoCommit = true;
+            endTransaction(true);
         } catch (SQLException e) {
+            metrics.recordError(e);
             if (devMode) {
                 logSqlExceptionMessage(e);
             }
@@ -112,27 +812,377 @@ public class SimpleDb {
 
     public void rollback() {
         try {
-            conn.rollback();
-            autoCommit = true;
+            endTransaction(false);
         } catch (SQLException e) {
+            metrics.recordError(e);
             if (devMode) {
                 logSqlExceptionMessage(e);
             }
         }
     }
 
-    public void close() {
+    /**
+     * 트랜잭션을 시작할 때 적용할 격리 수준. null이면 커넥션의 기본값을 쓴다
+     */
+    public void setTransactionIsolation(final IsolationLevel transactionIsolation) {
+        this.transactionIsolation = transactionIsolation;
+    }
+
+    /**
+     * {@link #inTransaction}이 교착 상태나 잠금 대기 시간 초과로 실패했을 때 다시 시도할 횟수와 첫 대기 시간
+     * <p>
+     * 대기 시간은 시도할 때마다 두 배가 되고, 그 절반에서 전체 사이의 임의의 값만큼 기다린다.
+     *
+     * @param maxRetries 최대 재시도 횟수. 0이면 다시 시도하지 않는다
+     * @param backoff    첫 재시도 전의 최대 대기 시간
+     */
+    public void setTransactionRetry(final int maxRetries, final Duration backoff) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Invalid max retries : " + maxRetries);
+        }
+        this.transactionMaxRetries = maxRetries;
+        this.transactionRetryBackoffMillis = backoff.toMillis();
+    }
+
+    /**
+     * callback을 트랜잭션 안에서 실행하고 commit 한다. callback이 예외를 던지거나 안에서 실행한 SQL문이 실패하면 롤백한다
+     * <p>
+     * 교착 상태(SQLState 40001, 오류 1213)나 잠금 대기 시간 초과(오류 1205)로 실패하면
+     * {@link #setTransactionRetry}의 설정만큼 기다렸다가 callback을 처음부터 다시 실행하므로, callback은 다시 실행해도 되어야 한다.
+     * <p>
+     * 이미 트랜잭션 중에 호출하면 savepoint를 만들어 callback을 실행하고, 실패하면 savepoint까지만 롤백한 뒤 예외를 던진다.
+     * 바깥 callback이 그 예외를 잡으면 트랜잭션을 이어갈 수 있다. 이때 격리 수준은 바꾸지 않는다.
+     *
+     * @param callback 이 SimpleDb를 받아 SQL을 실행하는 함수
+     * @return callback의 결과
+     * @throws SqlExecutionException 트랜잭션 안의 SQL문 또는 commit이 실패한 경우
+     */
+    public <T> T inTransaction(final Function<SimpleDb, T> callback) {
+        return inTransaction(transactionIsolation, callback);
+    }
+
+    /**
+     * 격리 수준을 지정해 {@link #inTransaction(Function)}을 실행한다
+     */
+    public <T> T inTransaction(final IsolationLevel isolation, final Function<SimpleDb, T> callback) {
+        if (isInTransaction()) {
+            return inSavepoint(callback);
+        }
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return runTransaction(isolation, callback);
+            } catch (RuntimeException e) {
+                final SQLException cause = sqlExceptionOf(e);
+                if (attempt >= transactionMaxRetries || !isRetryable(cause)) {
+                    throw e;
+                }
+                logger.warning("Retrying transaction (%d/%d) : %s".formatted(attempt + 1, transactionMaxRetries, cause.getMessage()));
+                try {
+                    Thread.sleep(retryBackoffMillis(attempt));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 결과가 없는 callback을 {@link #inTransaction(Function)}으로 실행한다
+     */
+    public void runInTransaction(final Consumer<SimpleDb> callback) {
+        runInTransaction(transactionIsolation, callback);
+    }
+
+    public void runInTransaction(final IsolationLevel isolation, final Consumer<SimpleDb> callback) {
+        inTransaction(isolation, tx -> {
+            callback.accept(tx);
+            return null;
+        });
+    }
+
+    private <T> T runTransaction(final IsolationLevel isolation, final Function<SimpleDb, T> callback) {
         try {
-            conn.close();
+            beginTransaction(isolation);
         } catch (SQLException e) {
-            if (devMode) {
-                logSqlExceptionMessage(e);
+            metrics.recordError(e);
+            throw new SqlExecutionException("Failed to start transaction", e);
+        }
+        final T result;
+        try {
+            result = callback.apply(this);
+            final SQLException failure = transactionState.get().failure;
+            if (failure != null) {
+                throw new SqlExecutionException("Statement failed in transaction", failure);
+            }
+        } catch (RuntimeException | Error e) {
+            rollback();
+            throw e;
+        }
+        try {
+            endTransaction(true);
+        } catch (SQLException e) {
+            metrics.recordError(e);
+            throw new SqlExecutionException("Failed to commit transaction", e);
+        }
+        return result;
+    }
+
+    private <T> T inSavepoint(final Function<SimpleDb, T> callback) {
+        final Connection conn = transactionConnection.get().connection();
+        final TransactionState state = transactionState.get();
+        final SQLException outerFailure = state.failure;
+        final Savepoint savepoint;
+        try {
+            savepoint = conn.setSavepoint();
+        } catch (SQLException e) {
+            recordError(e);
+            throw new SqlExecutionException("Failed to set savepoint", e);
+        }
+        state.failure = null;
+        try {
+            final T result = callback.apply(this);
+            if (state.failure != null) {
+                throw new SqlExecutionException("Statement failed in transaction", state.failure);
+            }
+            state.failure = outerFailure;
+            try {
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException ignored) {
+                // 트랜잭션이 끝날 때 함께 정리된다
+            }
+            return result;
+        } catch (RuntimeException | Error e) {
+            final SQLException cause = sqlExceptionOf(e);
+            if (isRetryable(cause)) {
+                // 교착 상태로 트랜잭션 전체가 롤백되었을 수 있으므로 savepoint로 돌아가지 않고 바깥 트랜잭션을 실패시킨다
+                state.failure = cause;
+                throw e;
+            }
+            try {
+                conn.rollback(savepoint);
+                state.failure = outerFailure;
+            } catch (SQLException rollbackError) {
+                metrics.recordError(rollbackError);
+                if (state.failure == null) {
+                    state.failure = rollbackError;
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void beginTransaction(final IsolationLevel isolation) throws SQLException {
+        final PooledConnection pooledConnection = connectionPool.borrow();
+        try {
+            final Connection conn = pooledConnection.connection();
+            final TransactionState state = new TransactionState();
+            if (isolation != null) {
+                final int previousIsolation = conn.getTransactionIsolation();
+                if (previousIsolation != isolation.level()) {
+                    conn.setTransactionIsolation(isolation.level());
+                    state.previousIsolation = previousIsolation;
+                }
+            }
+            conn.setAutoCommit(false);
+            transactionConnection.set(pooledConnection);
+            transactionState.set(state);
+        } catch (SQLException e) {
+            connectionPool.release(pooledConnection);
+            throw e;
+        }
+    }
+
+    private void endTransaction(final boolean commit) throws SQLException {
+        final PooledConnection pooledConnection = transactionConnection.get();
+        if (pooledConnection == null) {
+            return;
+        }
+        transactionConnection.remove();
+        final TransactionState state = transactionState.get();
+        transactionState.remove();
+        final Connection conn = pooledConnection.connection();
+        boolean ended = false;
+        try {
+            if (commit) {
+                conn.commit();
+            } else {
+                conn.rollback();
+            }
+            ended = true;
+            final QueryCache cache = queryCache;
+            if (commit && cache != null && state != null && !state.writtenTables.isEmpty()) {
+                cache.invalidate(state.writtenTables.contains("*") ? Set.of() : state.writtenTables);
+            }
+        } finally {
+            try {
+                if (!ended) {
+                    // commit에 실패했으면 잡고 있는 잠금을 바로 푼다
+                    conn.rollback();
+                }
+                conn.setAutoCommit(true);
+                if (state != null && state.previousIsolation >= 0) {
+                    conn.setTransactionIsolation(state.previousIsolation);
+                }
+            } catch (SQLException e) {
+                if (devMode) {
+                    logSqlExceptionMessage(e);
+                }
+            } finally {
+                connectionPool.release(pooledConnection);
+            }
+        }
+    }
+
+    /**
+     * SQL문 실패를 기록한다. 트랜잭션 중이면 {@link #inTransaction}이 롤백할 수 있도록 현재 블록의 실패로 남긴다
+     */
+    void recordError(final SQLException e) {
+        metrics.recordError(e);
+        final TransactionState state = transactionState.get();
+        if (state != null && state.failure == null) {
+            state.failure = e;
+        }
+    }
+
+    /**
+     * 트랜잭션을 처음부터 다시 실행하면 성공할 수 있는 실패인지. 교착 상태와 잠금 대기 시간 초과
+     */
+    static boolean isRetryable(final SQLException e) {
+        if (e == null) {
+            return false;
+        }
+        return e instanceof SQLTransactionRollbackException
+                || "40001".equals(e.getSQLState())
+                || e.getErrorCode() == 1213
+                || e.getErrorCode() == 1205;
+    }
+
+    private static SQLException sqlExceptionOf(final Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                return sqlException;
+            }
+        }
+        return null;
+    }
+
+    private long retryBackoffMillis(final int attempt) {
+        final long backoff = transactionRetryBackoffMillis << Math.min(attempt, 16);
+        if (backoff <= 1) {
+            return backoff;
+        }
+        // 같은 잠금을 두고 부딪힌 트랜잭션들이 동시에 다시 시도하지 않도록 대기 시간을 흩뜨린다
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    /**
+     * 현재 스레드가 사용 중인 커넥션을 정리한다. 열려 있는 트랜잭션은 롤백하고 커넥션을 풀에 반납한다
+     * <p>
+     * 다른 스레드의 커넥션과 트랜잭션에는 영향을 주지 않는다
+     */
+    public void close() {
+        rollback();
+    }
+
+    /**
+     * write-behind 버퍼에 남은 row를 모두 쓰고 커넥션 풀을 종료한다. 종료 후에는 SQL을 실행할 수 없다
+     */
+    public void shutdown() {
+        rollback();
+        final WriteBehindBuffer buffer = writeBehindBuffer;
+        if (buffer != null) {
+            // 남은 row를 모두 쓴 뒤 풀을 닫는다
+            buffer.close();
+        }
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+        }
+        if (partitionPool != null) {
+            partitionPool.shutdown();
+        }
+        unregisterMetricsMBean();
+        for (ConnectionPool pool : allPools()) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 비동기 Sql 실행기. 처음 사용할 때 그 시점의 최대 커넥션 수만큼 동시 실행을 허용하도록 만든다
+     */
+    AsyncSqlExecutor asyncExecutor() {
+        if (asyncExecutor == null) {
+            synchronized (this) {
+                if (asyncExecutor == null) {
+                    asyncExecutor = new AsyncSqlExecutor(connectionPool.getMaxSize());
+                }
+            }
+        }
+        return asyncExecutor;
+    }
+
+    /**
+     * 범위 조회용 fork/join 풀. 처음 사용할 때 그 시점의 최대 커넥션 수만큼 스레드를 두도록 만든다
+     * <p>
+     * 커넥션을 기다리기만 할 스레드가 생기지 않도록 join에서 기다리는 작업자를 대신할 스레드는 만들지 않는다.
+     */
+    ForkJoinPool partitionPool() {
+        ForkJoinPool pool = partitionPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = partitionPool;
+                if (pool == null) {
+                    final int size = connectionPool.getMaxSize();
+                    pool = new ForkJoinPool(size, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false,
+                            size, size, 1, saturated -> true, 60, TimeUnit.SECONDS);
+                    partitionPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    private List<ConnectionPool> allPools() {
+        final List<ConnectionPool> pools = new ArrayList<>(replicaPools.size() + 1);
+        pools.add(connectionPool);
+        pools.addAll(replicaPools);
+        return pools;
+    }
+
+    private int getActiveConnectionCount() {
+        int count = 0;
+        for (ConnectionPool pool : allPools()) {
+            count += pool.getActiveCount();
+        }
+        return count;
+    }
+
+    private int getIdleConnectionCount() {
+        int count = 0;
+        for (ConnectionPool pool : allPools()) {
+            count += pool.getIdleCount();
+        }
+        return count;
+    }
+
+    private void unregisterMetricsMBean() {
+        final ObjectName name = metricsMBeanName;
+        if (name == null) {
+            return;
+        }
+        metricsMBeanName = null;
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
             }
+        } catch (JMException e) {
+            logger.warning("Failed to unregister metrics MBean : " + e.getMessage());
         }
     }
 
-    private void logConnected() {
-        logger.info("Connect to Database : " + database);
+    private void logConnected(final String databaseName) {
+        logger.info("Connect to Database : " + databaseName);
     }
 
     private void logSqlExceptionMessage(final SQLException e) {
@@ -0,0 +1,112 @@
+package com.simpledb;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 기준 시간보다 오래 걸린 SQL문을 기록한다
+ * <p>
+ * SQL문, 바인딩된 인자값, 실행 시간, row 수를 경고로 남긴다. EXPLAIN을 켜면 같은 커넥션에서 실행 계획을 조회해 함께 남기는데,
+ * 느린 쿼리가 몰릴 때 EXPLAIN이 부하를 더하지 않도록 explainInterval 마다 한 번만 실행한다.
+ */
+class SlowQueryLog {
+
+    private static final int MAX_PARAM_LENGTH = 100;
+
+    private final long thresholdNanos;
+    private final boolean explain;
+    private final long explainIntervalNanos;
+    private final AtomicLong nextExplainAt = new AtomicLong(System.nanoTime());
+    private final Logger logger = Logger.getLogger(this.getClass().getName());
+
+    SlowQueryLog(final long thresholdMillis, final boolean explain, final long explainIntervalMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.explain = explain;
+        this.explainIntervalNanos = TimeUnit.MILLISECONDS.toNanos(explainIntervalMillis);
+    }
+
+    boolean isSlow(final long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    /**
+     * 느린 SQL문을 기록한다
+     *
+     * @param pooledConnection EXPLAIN을 실행할 커넥션. null 이면 EXPLAIN 하지 않는다
+     */
+    void log(final PooledConnection pooledConnection, final String statement, final List<Object> params,
+             final long elapsedNanos, final long rows) {
+        final StringBuilder message = new StringBuilder("Slow query (")
+                .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append(" ms, ")
+                .append(rows).append(" rows) : ")
+                .append(statement.strip())
+                .append(" | params : ");
+        appendParams(message, params);
+        if (explain && pooledConnection != null && isExplainable(statement) && tryAcquireExplain()) {
+            message.append(System.lineSeparator()).append("EXPLAIN :");
+            appendPlan(message, pooledConnection, statement, params);
+        }
+        logger.warning(message.toString());
+    }
+
+    /**
+     * 마지막 EXPLAIN 이후 explainInterval이 지났으면 이번 호출이 EXPLAIN 할 차례를 가져간다
+     */
+    private boolean tryAcquireExplain() {
+        final long now = System.nanoTime();
+        final long next = nextExplainAt.get();
+        return now - next >= 0 && nextExplainAt.compareAndSet(next, now + explainIntervalNanos);
+    }
+
+    private static boolean isExplainable(final String statement) {
+        final String head = statement.stripLeading().toUpperCase(Locale.ROOT);
+        return head.startsWith("SELECT") || head.startsWith("WITH") || head.startsWith("INSERT")
+                || head.startsWith("REPLACE") || head.startsWith("UPDATE") || head.startsWith("DELETE");
+    }
+
+    private void appendPlan(final StringBuilder message, final PooledConnection pooledConnection, final String statement,
+                            final List<Object> params) {
+        try (PreparedStatement psmt = pooledConnection.connection().prepareStatement("EXPLAIN " + statement)) {
+            for (int i = 0; i < params.size(); i++) {
+                Sql.bindParam(psmt, i + 1, params.get(i));
+            }
+            try (ResultSet rs = psmt.executeQuery()) {
+                final ResultSetMetaData rsmd = rs.getMetaData();
+                while (rs.next()) {
+                    message.append(System.lineSeparator()).append("  ");
+                    for (int i = 1; i <= rsmd.getColumnCount(); i++) {
+                        if (i > 1) {
+                            message.append(", ");
+                        }
+                        message.append(rsmd.getColumnLabel(i)).append('=').append(rs.getObject(i));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            message.append(" failed - ").append(e.getMessage());
+        }
+    }
+
+    private static void appendParams(final StringBuilder message, final List<Object> params) {
+        message.append('[');
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                message.append(", ");
+            }
+            final String param = String.valueOf(params.get(i));
+            if (param.length() > MAX_PARAM_LENGTH) {
+                message.append(param, 0, MAX_PARAM_LENGTH).append("...");
+            } else {
+                message.append(param);
+            }
+        }
+        message.append(']');
+    }
+}
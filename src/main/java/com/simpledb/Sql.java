@@ -1,30 +1,163 @@
 package com.simpledb;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 public class Sql {
 
-    private final Connection conn;
-    private final StringBuilder statementBuilder;
+    /**
+     * partitionSize를 지정하지 않았을 때 작업자 하나당 나눌 키 범위 수
+     */
+    private static final int RANGES_PER_WORKER = 4;
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][\\w$]*");
+
+    private final SimpleDb simpleDb;
+    private final PooledConnection fixedConnection;
+    /**
+     * 템플릿으로 만든 Sql은 처음 append 할 때 만든다. 그 전까지는 템플릿의 SQL문을 그대로 쓴다
+     */
+    private StringBuilder statementBuilder;
+    /**
+     * statementBuilder를 문자열로 만든 것. append 할 때마다 버린다
+     */
+    private String statement;
+    /**
+     * append로 추가한 인자값. 템플릿 인자는 따로 보관하고 이보다 앞에 바인딩한다
+     */
     private final List<Object> params;
+    private final SqlTemplate template;
+    /**
+     * template의 인자마다 바인딩할 타입. 바인딩하지 않은 인자는 null
+     */
+    private final TemplateParamType[] templateTypes;
+    /**
+     * long, int, double, boolean 템플릿 인자값. double은 비트 그대로, boolean은 0과 1로 넣는다
+     */
+    private final long[] templatePrimitives;
+    /**
+     * 나머지 템플릿 인자값
+     */
+    private final Object[] templateValues;
+    private int fetchSize = Integer.MIN_VALUE;
+    private final List<Object[]> batchParams = new ArrayList<>();
+    private int batchSize;
+    private boolean useQueryCache = true;
+    private BulkIn bulkIn;
+    private int bulkInChunkSize = 1000;
+    private long partitionSize;
+    private boolean fromPrimary;
     private final Logger logger = Logger.getLogger(this.getClass().getName());
 
+    /**
+     * 주어진 커넥션에서만 실행되는 Sql을 만든다. 커넥션을 닫는 것은 호출한 쪽의 책임이다
+     */
     public Sql(final Connection conn) {
-        this.conn = conn;
-        this.statementBuilder = new StringBuilder();
+        this(null, new PooledConnection(conn));
+    }
+
+    /**
+     * 실행할 때마다 SimpleDb에서 커넥션을 빌리고 실행이 끝나면 반납하는 Sql을 만든다
+     */
+    Sql(final SimpleDb simpleDb) {
+        this(simpleDb, null, null);
+    }
+
+    /**
+     * 미리 해석된 템플릿으로 시작하는 Sql을 만든다. 템플릿의 인자는 {@link #set(String, Object)} 등으로 바인딩한다
+     */
+    Sql(final SimpleDb simpleDb, final SqlTemplate template) {
+        this(simpleDb, null, template);
+    }
+
+    private Sql(final SimpleDb simpleDb, final PooledConnection fixedConnection) {
+        this(simpleDb, fixedConnection, null);
+    }
+
+    private Sql(final SimpleDb simpleDb, final PooledConnection fixedConnection, final SqlTemplate template) {
+        this.simpleDb = simpleDb;
+        this.fixedConnection = fixedConnection;
+        this.template = template;
+        batchSize = simpleDb != null ? simpleDb.getBatchSize() : 1000;
+        params = new ArrayList<>();
+        if (template == null) {
+            statementBuilder = new StringBuilder();
+            templateTypes = null;
+            templatePrimitives = null;
+            templateValues = null;
+        } else {
+            statement = template.statement();
+            templateTypes = new TemplateParamType[template.parameterCount()];
+            templatePrimitives = new long[template.parameterCount()];
+            templateValues = new Object[template.parameterCount()];
+        }
+    }
+
+    /**
+     * source와 같은 커넥션, 설정, 템플릿 인자값을 가지고 SQL문과 append한 인자값은 비어 있는 Sql
+     */
+    private Sql(final Sql source) {
+        simpleDb = source.simpleDb;
+        fixedConnection = source.fixedConnection;
+        template = source.template;
+        batchSize = source.batchSize;
+        useQueryCache = source.useQueryCache;
+        fromPrimary = source.fromPrimary;
+        statementBuilder = new StringBuilder();
         params = new ArrayList<>();
+        templateTypes = source.templateTypes == null ? null : source.templateTypes.clone();
+        templatePrimitives = source.templatePrimitives == null ? null : source.templatePrimitives.clone();
+        templateValues = source.templateValues == null ? null : source.templateValues.clone();
+    }
+
+    /**
+     * append 할 SQL문 buffer. 템플릿으로 만든 Sql은 이때 템플릿의 SQL문을 복사한다
+     */
+    private StringBuilder statementBuilder() {
+        if (statementBuilder == null) {
+            statementBuilder = new StringBuilder(template.statement());
+        }
+        return statementBuilder;
     }
 
     public Sql append(final String statement) {
+        final StringBuilder statementBuilder = statementBuilder();
+        this.statement = null;
         statementBuilder.append(statement);
         statementBuilder.append(' ');
         return this;
@@ -37,6 +170,8 @@ public class Sql {
      * @param objects   values
      */
     public Sql append(final String statement, final Object... objects) {
+        final StringBuilder statementBuilder = statementBuilder();
+        this.statement = null;
         statementBuilder.append(statement);
         statementBuilder.append(' ');
         for (Object object : objects) {
@@ -45,16 +180,138 @@ public class Sql {
         return this;
     }
 
+    /**
+     * statement의 첫 번째 placeholder를 인자값 개수만큼의 placeholder 목록으로 펼쳐서 추가한다
+     *
+     * @param statement SQL statement
+     * @param objects   values
+     */
     public Sql appendIn(final String statement, final Object... objects) {
-        StringBuilder tmpStatementBuilder = new StringBuilder(statement);
-        int placeHolderIndex = tmpStatementBuilder.indexOf("?");
-        for (int i = 0; i < objects.length - 1; i++) {
-            tmpStatementBuilder.insert(placeHolderIndex, "?, ");
+        final StringBuilder statementBuilder = statementBuilder();
+        this.statement = null;
+        final int placeHolderIndex = statement.indexOf('?');
+        if (placeHolderIndex < 0 || objects.length <= 1) {
+            statementBuilder.append(statement);
+        } else {
+            statementBuilder.ensureCapacity(statementBuilder.length() + statement.length() + (objects.length - 1) * 3);
+            statementBuilder.append(statement, 0, placeHolderIndex);
+            for (int i = 0; i < objects.length - 1; i++) {
+                statementBuilder.append("?, ");
+            }
+            statementBuilder.append(statement, placeHolderIndex, statement.length());
         }
-        statementBuilder.append(tmpStatementBuilder);
-        for (Object object : objects) {
-            params.add(object);
+        params.addAll(Arrays.asList(objects));
+        return this;
+    }
+
+    /**
+     * 템플릿 인자에 값을 바인딩한다. 드라이버가 값의 타입을 보고 바인딩 방법을 고른다
+     *
+     * @param name 템플릿의 인자 이름 (콜론 제외)
+     */
+    public Sql set(final String name, final Object value) {
+        return bindTemplateParam(name, TemplateParamType.OBJECT, 0, value);
+    }
+
+    /**
+     * 템플릿 인자에 long 값을 {@link PreparedStatement#setLong}으로 바인딩한다. 값은 boxing 없이 보관한다
+     */
+    public Sql setLong(final String name, final long value) {
+        return bindTemplateParam(name, TemplateParamType.LONG, value, null);
+    }
+
+    public Sql setInt(final String name, final int value) {
+        return bindTemplateParam(name, TemplateParamType.INT, value, null);
+    }
+
+    public Sql setDouble(final String name, final double value) {
+        return bindTemplateParam(name, TemplateParamType.DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    public Sql setBoolean(final String name, final boolean value) {
+        return bindTemplateParam(name, TemplateParamType.BOOLEAN, value ? 1 : 0, null);
+    }
+
+    public Sql setString(final String name, final String value) {
+        return bindTemplateParam(name, TemplateParamType.STRING, 0, value);
+    }
+
+    public Sql setDatetime(final String name, final LocalDateTime value) {
+        return bindTemplateParam(name, TemplateParamType.DATETIME, 0, value);
+    }
+
+    /**
+     * 인자 이름의 타입과 값을 넣는다. 실행할 때 이 인자가 나오는 모든 placeholder 위치에 바인딩된다
+     */
+    private Sql bindTemplateParam(final String name, final TemplateParamType type, final long primitive, final Object value) {
+        if (template == null) {
+            throw new IllegalStateException("Named parameters require a Sql created from a SqlTemplate");
+        }
+        final int parameterIndex = template.parameterIndex(name);
+        templateTypes[parameterIndex] = type;
+        templatePrimitives[parameterIndex] = primitive;
+        templateValues[parameterIndex] = value;
+        return this;
+    }
+
+    /**
+     * @throws IllegalStateException 바인딩하지 않은 템플릿 인자가 있는 경우
+     */
+    void checkTemplateParamsBound() {
+        if (template == null) {
+            return;
+        }
+        for (int i = 0; i < templateTypes.length; i++) {
+            if (templateTypes[i] == null) {
+                throw new IllegalStateException("Unbound template parameter : " + template.parameterName(i));
+            }
+        }
+    }
+
+    /**
+     * clazz가 매핑하는 컬럼만 조회하는 SELECT 목록을 추가한다. 예) "SELECT `id`, `title`"
+     * <p>
+     * 컬럼은 record 컴포넌트, 생성자 파라미터 또는 필드 이름에서 구한다. 목록 화면처럼 일부 컬럼만 필요한 경우
+     * 필요한 컬럼만 가진 타입을 만들어 {@code SELECT *}로 큰 컬럼까지 읽어오지 않도록 한다.
+     *
+     * @param clazz selectRows(Class) 등으로 읽을 타입
+     */
+    public Sql appendSelect(final Class<?> clazz) {
+        return append("SELECT " + EntityMapper.selectList(clazz));
+    }
+
+    /**
+     * 아주 큰 IN 목록을 추가한다
+     * <p>
+     * 인자값이 {@link #bulkInChunkSize(int)}개를 넘으면 selectRows, selectLongs, update, delete를 실행할 때
+     * 목록을 나눠 여러 SQL문으로 실행하고 결과를 chunk 순서대로 합친다. chunk들은 서로 다른 커넥션에서 동시에 실행되며,
+     * 트랜잭션 안이거나 고정된 커넥션을 쓰는 Sql, selectRowsAsync 등 비동기 작업 안에서 실행하면 차례로 실행된다. ORDER BY, LIMIT은 chunk마다 따로 적용된다.
+     * <p>
+     * Sql 하나에 한 번만 사용할 수 있다.
+     *
+     * @param statement 첫 번째 placeholder가 IN 목록으로 펼쳐질 SQL statement. 예) "WHERE id IN (?)"
+     * @param values    IN 목록의 값들
+     */
+    public Sql appendBulkIn(final String statement, final Collection<?> values) {
+        if (bulkIn != null) {
+            throw new IllegalStateException("Bulk IN has already been appended");
+        }
+        final int statementStart = statementBuilder().length();
+        final int paramStart = params.size();
+        final Object[] objects = values.toArray();
+        appendIn(statement, objects);
+        bulkIn = new BulkIn(statement, statementStart, statementBuilder.length(), paramStart, Arrays.asList(objects));
+        return this;
+    }
+
+    /**
+     * {@link #appendBulkIn}의 목록을 나눌 크기. 기본값은 1000
+     */
+    public Sql bulkInChunkSize(final int bulkInChunkSize) {
+        if (bulkInChunkSize < 1) {
+            throw new IllegalArgumentException("Invalid bulk IN chunk size : " + bulkInChunkSize);
         }
+        this.bulkInChunkSize = bulkInChunkSize;
         return this;
     }
 
@@ -64,39 +321,126 @@ public class Sql {
      * @return AUTO_INCREMENT 에 의해서 생성된 주키
      */
     public long insert() {
+        PooledConnection pooledConnection = null;
         try {
-            final PreparedStatement psmt = conn.prepareStatement(statementBuilder.toString(), Statement.RETURN_GENERATED_KEYS);
-            setObjectsToStatement(psmt);
-            psmt.executeUpdate();
-            try (ResultSet generatedKeys = psmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    // 자동 생성된 키 값 (AUTO_INCREMENT id)
-                    long generatedId = generatedKeys.getLong(1);
-                    return generatedId;
+            pooledConnection = acquireConnection();
+            final PreparedStatement psmt = pooledConnection.prepareStatement(statement(), true);
+            try {
+                setObjectsToStatement(psmt);
+                final long startNanos = System.nanoTime();
+                final int insertedCount = psmt.executeUpdate();
+                recordExecution(pooledConnection, StatementType.INSERT, startNanos, insertedCount);
+                try (ResultSet generatedKeys = psmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        // 자동 생성된 키 값 (AUTO_INCREMENT id)
+                        return generatedKeys.getLong(1);
+                    }
                 }
+            } finally {
+                pooledConnection.releaseStatement(psmt);
             }
         } catch (SQLException e) {
+            recordError(e);
             logger.warning("Failed to execute INSERT query : " + e.getMessage());
+        } finally {
+            releaseConnection(pooledConnection);
+            invalidateQueryCache();
         }
         return 0;
     }
 
+    /**
+     * 생성된 주키를 받지 않는 INSERT문 실행. 주키를 직접 지정한 INSERT에 쓴다
+     *
+     * @return 추가된 row 개수, 실패하면 0
+     */
+    int insertRows() {
+        return executeUpdate(StatementType.INSERT);
+    }
+
+    /**
+     * 배치로 실행할 row 하나의 인자값 추가. append로 추가한 인자값 뒤에 이어서 바인딩된다
+     *
+     * @param objects values
+     */
+    public Sql addBatch(final Object... objects) {
+        batchParams.add(objects);
+        return this;
+    }
+
+    /**
+     * executeBatch 한 번에 보낼 최대 row 수. 기본값은 {@link SimpleDb#setBatchSize(int)}
+     */
+    public Sql batchSize(final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size : " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * addBatch로 추가한 row들을 batchSize 단위로 나눠 한 번에 실행
+     * <p>
+     * INSERT ... VALUES 형태는 드라이버가 여러 row짜리 INSERT로 합쳐서 보낸다.
+     * 실행 중 실패하면 경고를 남기고 그때까지 생성된 주키만 돌려준다.
+     *
+     * @return AUTO_INCREMENT 에 의해서 생성된 주키들
+     */
+    public long[] executeBatch() {
+        long[] generatedIds = new long[batchParams.size()];
+        int generatedCount = 0;
+        PooledConnection pooledConnection = null;
+        try {
+            pooledConnection = acquireConnection();
+            final PreparedStatement psmt = pooledConnection.prepareStatement(statement(), true);
+            try {
+                final long startNanos = System.nanoTime();
+                for (int from = 0; from < batchParams.size(); from += batchSize) {
+                    final int to = Math.min(from + batchSize, batchParams.size());
+                    for (Object[] batchRow : batchParams.subList(from, to)) {
+                        final int offset = bindParams(psmt, 0);
+                        for (int i = 0; i < batchRow.length; i++) {
+                            bindParam(psmt, offset + i + 1, batchRow[i]);
+                        }
+                        psmt.addBatch();
+                    }
+                    psmt.executeBatch();
+                    try (ResultSet generatedKeys = psmt.getGeneratedKeys()) {
+                        while (generatedKeys.next()) {
+                            if (generatedCount == generatedIds.length) {
+                                generatedIds = Arrays.copyOf(generatedIds, generatedIds.length * 2 + 1);
+                            }
+                            generatedIds[generatedCount++] = generatedKeys.getLong(1);
+                        }
+                    }
+                }
+                // 배치 row의 인자값은 SQL문 하나에 대응하지 않으므로 EXPLAIN 하지 않는다
+                recordExecution(null, StatementType.BATCH, startNanos, batchParams.size());
+            } finally {
+                psmt.clearBatch();
+                pooledConnection.releaseStatement(psmt);
+            }
+        } catch (SQLException e) {
+            recordError(e);
+            logger.warning("Failed to execute BATCH query : " + e.getMessage());
+        } finally {
+            releaseConnection(pooledConnection);
+            invalidateQueryCache();
+        }
+        return Arrays.copyOf(generatedIds, generatedCount);
+    }
+
     /**
      * UPDATE문 실행
      *
      * @return 수정된 row 개수
      */
     public int update() {
-        try {
-            final PreparedStatement psmt = conn.prepareStatement(statementBuilder.toString());
-            setObjectsToStatement(psmt);
-            final int affectedRow = psmt.executeUpdate();
-            close(psmt);
-            return affectedRow;
-        } catch (SQLException e) {
-            logger.warning("Failed to execute UPDATE query : " + e.getMessage());
-            return 0;
+        if (isChunkedBulkIn()) {
+            return sum(executeChunks(Sql::update));
         }
+        return executeUpdate(StatementType.UPDATE);
     }
 
     /**
@@ -105,75 +449,49 @@ public class Sql {
      * @return 삭제된 row 개수
      */
     public int delete() {
-        try {
-            final PreparedStatement psmt = conn.prepareStatement(statementBuilder.toString());
-            setObjectsToStatement(psmt);
-            final int affectedRow = psmt.executeUpdate();
-            close(psmt);
-            return affectedRow;
-        } catch (SQLException e) {
-            logger.warning("Failed to execute DELETE query : " + e.getMessage());
-            return 0;
+        if (isChunkedBulkIn()) {
+            return sum(executeChunks(Sql::delete));
         }
+        return executeUpdate(StatementType.DELETE);
     }
 
     /**
      * 하나의 Row에 대한 SELECT문 실행
      *
-     * @return SELECT 결과 Map
+     * @return SELECT 결과 Map, 조회된 row가 없으면 빈 Map. 어느 쪽이든 {@link Row}이고 자유롭게 바꿀 수 있다
      */
     public Map<String, Object> selectRow() {
-        final Map<String, Object> resultMap = new HashMap<>();
-        final ResultSet rs;
-        try {
-            final PreparedStatement psmt = conn.prepareStatement(statementBuilder.toString());
-            setObjectsToStatement(psmt);
-            // ResultMap에 조회된 데이터 추가
-            rs = psmt.executeQuery();
-            final ResultSetMetaData rsmd = rs.getMetaData();
-            final int columnSize = rsmd.getColumnCount();
-            while (rs.next()) {
-                for (int i = 0; i < columnSize; i++) {
-                    resultMap.put(rsmd.getColumnName(i + 1), rs.getObject(i + 1));
-                }
+        return executeCachedQuery(Row.empty(), rs -> {
+            if (!rs.next()) {
+                return Row.empty();
             }
-            close(rs, psmt);
-            return resultMap;
-        } catch (SQLException e) {
-            logger.warning("Failed to execute SELECT query : " + e.getMessage());
-        }
-        return resultMap;
+            return Row.read(RowSchema.of(rs.getMetaData()), rs);
+        }, rows -> rows.isEmpty() ? Row.empty() : rows.get(0).copy());
     }
 
     /**
      * 여러 Row에 대한 SELECT문 실행
      *
-     * @return SELECT 결과 Map의 List
+     * @return SELECT 결과 Map의 List. 모든 row가 컬럼 이름 정보를 공유한다
      */
     public List<Map<String, Object>> selectRows() {
-        final List<Map<String, Object>> resultList = new ArrayList<>();
-        final ResultSet rs;
-        Map<String, Object> resultMap;
-        try {
-            final PreparedStatement psmt = conn.prepareStatement(statementBuilder.toString());
-            setObjectsToStatement(psmt);
-            // ResultMap에 조회된 데이터 추가
-            rs = psmt.executeQuery();
-            final ResultSetMetaData rsmd = rs.getMetaData();
-            final int columnSize = rsmd.getColumnCount();
+        if (isChunkedBulkIn()) {
+            return concat(executeChunks(Sql::selectRows));
+        }
+        return executeCachedQuery(new ArrayList<>(), rs -> {
+            final List<Map<String, Object>> resultList = new ArrayList<>();
+            final RowSchema schema = RowSchema.of(rs.getMetaData());
             while (rs.next()) {
-                resultMap = new HashMap<>();
-                for (int i = 0; i < columnSize; i++) {
-                    resultMap.put(rsmd.getColumnName(i + 1), rs.getObject(i + 1));
-                }
-                resultList.add(resultMap);
+                resultList.add(Row.read(schema, rs));
             }
-            close(rs, psmt);
             return resultList;
-        } catch (SQLException e) {
-            logger.warning("Failed to execute SELECT query : " + e.getMessage());
-        }
-        return resultList;
+        }, rows -> {
+            final List<Map<String, Object>> resultList = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                resultList.add(row.copy());
+            }
+            return resultList;
+        });
     }
 
     /**
@@ -183,46 +501,15 @@ public class Sql {
      * @return SELECT 결과 entity 객체
      */
     public <T> T selectRow(final Class<T> clazz) {
-        T resultObject = null;
-        final ResultSet rs;
-
-        try {
-            final PreparedStatement psmt = conn.prepareStatement(statementBuilder.toString());
-            setObjectsToStatement(psmt);
-            rs = psmt.executeQuery();
-            final ResultSetMetaData rsmd = rs.getMetaData();
-            int columnSize = rsmd.getColumnCount();
+        final T entity = executeCachedQuery(null, rs -> {
+            final EntityMapper<T> mapper = EntityMapper.of(clazz, rs.getMetaData());
 
             rs.next();
-            resultObject = getInstanceFromResult(clazz, columnSize, rsmd, rs);
-
-            close(rs, psmt);
-            return resultObject;
-        } catch (SQLException e) {
-            logger.warning("Failed to execute SELECT query : " + e.getMessage());
-        } catch (InvocationTargetException | IllegalAccessException | InstantiationException |
-                 NoSuchMethodException e) {
-            throw new RuntimeException(e);
-        }
-        return resultObject;
-    }
-
-    private <T> T getInstanceFromResult(Class<T> clazz, int columnSize, ResultSetMetaData rsmd, ResultSet rs) throws SQLException, InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
-        final Map<String, Object> resultMap = new HashMap<>();
-        // ResultMap에 조회된 데이터를 추가
-        for (int i = 0; i < columnSize; i++) {
-            resultMap.put(rsmd.getColumnName(i + 1), rs.getObject(i + 1));
-        }
-
-        // 인스턴스로 만든 후 setter 메소드로 필드값 저장
-        T resultObject = clazz.getDeclaredConstructor().newInstance();
-        Field[] fields = clazz.getDeclaredFields();
-        for (Field field : fields) {
-            String setterMethodName = "set" + capitalize(field.getName());
-            Method setterMethod = clazz.getMethod(setterMethodName, field.getType());
-            setterMethod.invoke(resultObject, resultMap.get(field.getName()));
-        }
-        return resultObject;
+            return mapper.map(rs);
+        }, rows -> rows.isEmpty() ? null : EntityMapper.of(clazz, rows.get(0).schema()).map(rows.get(0)));
+        recordRowsMapped(entity == null ? 0 : 1);
+        snapshot(entity);
+        return entity;
     }
 
     /**
@@ -232,31 +519,33 @@ public class Sql {
      * @return SELECT 결과 entity 객체들의 list
      */
     public <T> List<T> selectRows(Class<T> clazz) {
-        final List<T> resultList = new ArrayList<>();
-        final ResultSet rs;
-        T resultObject;
-
-        try {
-            PreparedStatement psmt = conn.prepareStatement(statementBuilder.toString());
-            setObjectsToStatement(psmt);
-            rs = psmt.executeQuery();
-            ResultSetMetaData rsmd = rs.getMetaData();
-            int columnSize = rsmd.getColumnCount();
+        if (isChunkedBulkIn()) {
+            return concat(executeChunks(chunk -> chunk.selectRows(clazz)));
+        }
+        final List<T> entities = executeCachedQuery(new ArrayList<>(), rs -> {
+            final List<T> resultList = new ArrayList<>();
+            // 컬럼 구성에 맞는 mapper는 조회마다 한 번만 찾는다
+            final EntityMapper<T> mapper = EntityMapper.of(clazz, rs.getMetaData());
 
             while (rs.next()) {
-                resultObject = getInstanceFromResult(clazz, columnSize, rsmd, rs);
-                resultList.add(resultObject);
+                resultList.add(mapper.map(rs));
             }
-            close(rs, psmt);
             return resultList;
-
-        } catch (SQLException e) {
-            logger.warning("Failed to execute SELECT query : " + e.getMessage());
-        } catch (InvocationTargetException | IllegalAccessException | InstantiationException |
-                 NoSuchMethodException e) {
-            throw new RuntimeException(e);
+        }, rows -> {
+            final List<T> resultList = new ArrayList<>(rows.size());
+            if (!rows.isEmpty()) {
+                final EntityMapper<T> mapper = EntityMapper.of(clazz, rows.get(0).schema());
+                for (Row row : rows) {
+                    resultList.add(mapper.map(row));
+                }
+            }
+            return resultList;
+        });
+        recordRowsMapped(entities.size());
+        if (simpleDb != null && simpleDb.isDirtyChecking()) {
+            entities.forEach(this::snapshot);
         }
-        return resultList;
+        return entities;
     }
 
     /**
@@ -265,114 +554,1179 @@ public class Sql {
      * @return SELECT 결과
      */
     public Long selectLong() {
-        Long result = 0L;
-        ResultSet rs;
-        try {
-            PreparedStatement psmt = conn.prepareStatement(statementBuilder.toString());
-            setObjectsToStatement(psmt);
-            // ResultMap에 조회된 데이터 추가
-            rs = psmt.executeQuery();
+        return executeCachedQuery(0L, rs -> {
             rs.next();
-            result = rs.getLong(1);
-            close(rs, psmt);
-            return result;
-        } catch (SQLException e) {
-            logger.warning("Failed to execute SELECT query : " + e.getMessage());
-        }
-        return result;
+            return rs.getLong(1);
+        }, rows -> rows.isEmpty() ? 0L : toLong(rows.get(0).get(0)));
     }
 
     public String selectString() {
-        String result = "";
-        ResultSet rs;
-        try {
-            PreparedStatement psmt = conn.prepareStatement(statementBuilder.toString());
-            setObjectsToStatement(psmt);
-            // ResultMap에 조회된 데이터 추가
-            rs = psmt.executeQuery();
+        return executeCachedResult(String.class, "", rs -> {
             rs.next();
-            result = rs.getString(1);
-            close(rs, psmt);
-            return result;
-        } catch (SQLException e) {
-            logger.warning("Failed to execute SELECT query : " + e.getMessage());
-        }
-        return result;
+            return rs.getString(1);
+        }, UnaryOperator.identity());
     }
 
     public Boolean selectBoolean() {
-        final ResultSet rs;
-        Boolean result = false;
-        try {
-            PreparedStatement psmt = conn.prepareStatement(statementBuilder.toString());
-            setObjectsToStatement(psmt);
-            // ResultMap에 조회된 데이터 추가
-            rs = psmt.executeQuery();
+        return executeCachedQuery(false, rs -> {
             rs.next();
-            result = rs.getBoolean(1);
-            close(rs, psmt);
-            return result;
-        } catch (SQLException e) {
-            logger.warning("Failed to execute SELECT query : " + e.getMessage());
-        }
-        return result;
+            return rs.getBoolean(1);
+        }, rows -> !rows.isEmpty() && toLong(rows.get(0).get(0)) != 0);
     }
 
     public List<Long> selectLongs() {
-        final List<Long> resultList = new ArrayList<>();
-        final ResultSet rs;
-        try {
-            PreparedStatement psmt = conn.prepareStatement(statementBuilder.toString());
-            setObjectsToStatement(psmt);
-            // ResultMap에 조회된 데이터 추가
-            rs = psmt.executeQuery();
+        if (isChunkedBulkIn()) {
+            return concat(executeChunks(Sql::selectLongs));
+        }
+        return executeCachedQuery(new ArrayList<>(), rs -> {
+            final List<Long> resultList = new ArrayList<>();
             while (rs.next()) {
                 resultList.add(rs.getLong(1));
             }
-            close(rs, psmt);
             return resultList;
-        } catch (SQLException e) {
-            logger.warning("Failed to execute SELECT query : " + e.getMessage());
-        }
-        return resultList;
+        }, rows -> {
+            final List<Long> resultList = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                resultList.add(toLong(row.get(0)));
+            }
+            return resultList;
+        });
+    }
+
+    /**
+     * 첫 번째 컬럼을 박싱 없이 long[] 기반 컬럼으로 읽는 SELECT문 실행
+     *
+     * @return SELECT 결과 컬럼, 실패하면 경고를 남기고 그때까지 읽은 값만 담긴다
+     */
+    public LongColumn selectLongColumn() {
+        return selectFirstColumn(new LongColumn());
+    }
+
+    public IntColumn selectIntColumn() {
+        return selectFirstColumn(new IntColumn());
+    }
+
+    public DoubleColumn selectDoubleColumn() {
+        return selectFirstColumn(new DoubleColumn());
+    }
+
+    public BooleanColumn selectBooleanColumn() {
+        return selectFirstColumn(new BooleanColumn());
+    }
+
+    /**
+     * 여러 Row에 대한 SELECT문을 실행하고 결과를 컬럼 단위로 담는다
+     *
+     * @return 컬럼별 결과. 정수, 실수, 불리언 컬럼은 기본형 배열에 담긴다
+     */
+    public ColumnarResult selectColumns() {
+        return executeCachedResult(ColumnarResult.class, ColumnarResult.empty(), ColumnarResult::read, ColumnarResult::copy);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <C extends Column> C selectFirstColumn(final C column) {
+        return executeCachedResult(column.getClass(), column, rs -> {
+            while (rs.next()) {
+                column.readFrom(rs, 1);
+            }
+            return column;
+        }, cached -> (C) cached.copy());
     }
 
     public LocalDateTime selectDatetime() {
-        final ResultSet rs;
-        Timestamp timeStamp;
-        try {
-            PreparedStatement psmt = conn.prepareStatement(statementBuilder.toString());
-            setObjectsToStatement(psmt);
-            rs = psmt.executeQuery();
+        final LocalDateTime dateTime = executeCachedResult(LocalDateTime.class, null, rs -> {
             rs.next();
-            timeStamp = rs.getTimestamp(1);
-            close(rs, psmt);
-            return timeStamp.toLocalDateTime();
-        } catch (SQLException e) {
-            logger.warning("Failed to execute SELECT query : " + e.getMessage());
+            final Timestamp timeStamp = rs.getTimestamp(1);
+            return timeStamp == null ? null : timeStamp.toLocalDateTime();
+        }, UnaryOperator.identity());
+        if (dateTime == null) {
+            throw new RuntimeException("DateTime 조회에 실패했습니다");
         }
-        throw new RuntimeException("DateTime 조회에 실패했습니다");
+        return dateTime;
     }
 
-    private void setObjectsToStatement(PreparedStatement psmt) throws SQLException {
-        for (int i = 0; i < params.size(); i++) {
-            psmt.setObject(i + 1, params.get(i));
+    /**
+     * 스트리밍 조회에서 한 번에 가져올 row 수
+     * <p>
+     * 기본값은 MySQL 스트리밍 모드(한 row씩 전송)다. 양수 값은 {@link SimpleDb#setCursorFetch(boolean)}가 켜져 있을 때
+     * 서버 커서를 열어 그만큼씩 가져온다.
+     */
+    public Sql fetchSize(final int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * 여러 Row에 대한 SELECT문을 실행하고 결과를 한 row씩 읽는다
+     *
+     * @return 닫아야 하는 row iterator. 조회에 실패하면 빈 iterator
+     */
+    public ResultIterator<Map<String, Object>> iterate() {
+        return openIterator(rs -> {
+            final RowSchema schema = RowSchema.of(rs.getMetaData());
+            return row -> Row.read(schema, row);
+        });
+    }
+
+    /**
+     * 여러 Row에 대한 SELECT문을 실행하고 결과를 한 row씩 entity로 읽는다
+     *
+     * @param clazz SELECT 하려는 entity의 클래스
+     * @return 닫아야 하는 entity iterator. 조회에 실패하면 빈 iterator
+     */
+    public <T> ResultIterator<T> iterate(final Class<T> clazz) {
+        return openIterator(rs -> {
+            final EntityMapper<T> mapper = EntityMapper.of(clazz, rs.getMetaData());
+            return row -> {
+                final T entity = mapper.map(row);
+                recordRowsMapped(1);
+                snapshot(entity);
+                return entity;
+            };
+        });
+    }
+
+    /**
+     * {@link #iterate()}를 Stream으로 감싼다. try-with-resources로 닫아야 한다
+     */
+    public Stream<Map<String, Object>> stream() {
+        return iterate().stream();
+    }
+
+    /**
+     * {@link #iterate(Class)}를 Stream으로 감싼다. try-with-resources로 닫아야 한다
+     */
+    public <T> Stream<T> stream(final Class<T> clazz) {
+        return iterate(clazz).stream();
+    }
+
+    /**
+     * 결과를 메모리에 모으지 않고 한 row씩 entity로 읽어 action에 넘긴다
+     */
+    public <T> void forEach(final Class<T> clazz, final Consumer<? super T> action) {
+        try (ResultIterator<T> iterator = iterate(clazz)) {
+            iterator.forEachRemaining(action);
         }
     }
 
-    private String capitalize(String string) {
-        if (string == null || string.isEmpty()) {
-            return string;
+    /**
+     * 파티션 조회에서 파티션 하나가 맡을 키 범위의 크기. 지정하지 않으면 전체 범위를 parallelism 개로 나눈다
+     */
+    public Sql partitionSize(final long partitionSize) {
+        if (partitionSize < 1) {
+            throw new IllegalArgumentException("Invalid partition size : " + partitionSize);
         }
-        return string.substring(0, 1).toUpperCase() + string.substring(1);
+        this.partitionSize = partitionSize;
+        return this;
     }
 
-    private void close(PreparedStatement psmt) throws SQLException {
-        psmt.close();
+    /**
+     * SELECT문을 정수 키 범위로 나눠 여러 커넥션에서 동시에 실행하고 결과를 합친다
+     * <p>
+     * SQL문을 derived table로 감싸 partitionColumn의 MIN, MAX를 구한 뒤
+     * {@code partitionColumn BETWEEN ? AND ?} 범위마다 SQL문을 실행한다. 결과는 partitionColumn 순서로 정렬된다.
+     * 조회 결과가 없어 MIN, MAX가 NULL이면 범위 조회 없이 빈 list를 돌려준다.
+     * 트랜잭션 안이거나 고정된 커넥션을 쓰는 Sql이면 범위를 차례로 실행한다.
+     *
+     * @param clazz           SELECT 하려는 entity의 클래스
+     * @param partitionColumn 범위를 나눌 정수 컬럼. 보통 주키
+     * @param parallelism     동시에 실행할 최대 SQL문 수
+     * @return SELECT 결과 entity 객체들의 list
+     */
+    public <T> List<T> selectRowsParallel(final Class<T> clazz, final String partitionColumn, final int parallelism) {
+        final List<Supplier<List<T>>> partitions = executePartitions(clazz, partitionColumn, parallelism).results();
+        final List<List<T>> results = new ArrayList<>(partitions.size());
+        for (Supplier<List<T>> partition : partitions) {
+            results.add(partition.get());
+        }
+        return concat(results);
     }
 
-    private void close(final ResultSet rs, final PreparedStatement psmt) throws SQLException {
-        rs.close();
-        close(psmt);
+    /**
+     * {@link #selectRowsParallel}의 결과를 파티션 순서대로 흘려보낸다. 앞 파티션을 읽는 동안 뒤 파티션이 조회된다
+     * <p>
+     * 다 읽기 전에 stream을 닫으면 아직 시작하지 않은 범위는 조회하지 않는다.
+     */
+    public <T> Stream<T> streamParallel(final Class<T> clazz, final String partitionColumn, final int parallelism) {
+        final Partitions<T> partitions = executePartitions(clazz, partitionColumn, parallelism);
+        return partitions.results().stream()
+                .flatMap(partition -> partition.get().stream())
+                .onClose(partitions.cancel());
+    }
+
+    /**
+     * 첫 번째 row의 TEXT/BLOB 컬럼을 메모리에 모으지 않고 channel로 흘려보낸다
+     * <p>
+     * 스트리밍 모드로 조회하므로 문자열이나 byte[]로 바꾸지 않고 드라이버가 받은 row에서 바로 복사한다.
+     *
+     * @param column 읽을 컬럼 이름
+     * @param target 값을 쓸 channel. 닫지 않는다
+     * @return 복사한 byte 수, 조회된 row가 없거나 값이 NULL이면 0
+     * @throws UncheckedIOException channel에 쓰지 못한 경우
+     */
+    public long selectTo(final String column, final WritableByteChannel target) {
+        return selectFirst(rs -> {
+            final InputStream in = rs.getBinaryStream(column);
+            return in == null ? 0L : transfer(Channels.newChannel(in), target);
+        }, 0L);
+    }
+
+    /**
+     * 첫 번째 row의 TEXT/BLOB 컬럼을 파일에 쓴다. 파일이 있으면 덮어쓴다
+     *
+     * @return 쓴 byte 수
+     */
+    public long selectTo(final String column, final Path file) {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return selectTo(column, channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 첫 번째 row의 TEXT 컬럼을 문자 단위로 writer에 흘려보낸다
+     *
+     * @return 복사한 문자 수
+     */
+    public long selectTo(final String column, final Writer target) {
+        return selectFirst(rs -> {
+            try (Reader reader = rs.getCharacterStream(column)) {
+                return reader == null ? 0L : reader.transferTo(target);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, 0L);
+    }
+
+    /**
+     * 첫 번째 row의 TEXT/BLOB 컬럼을 읽는 InputStream. 닫을 때까지 커넥션을 붙잡고 있으므로 반드시 닫아야 한다
+     *
+     * @return 컬럼 값 stream, 조회된 row가 없거나 값이 NULL이면 빈 stream
+     */
+    public InputStream selectStream(final String column) {
+        final ResultIterator<InputStream> iterator = openIterator(rs -> row -> row.getBinaryStream(column));
+        if (!iterator.hasNext()) {
+            return InputStream.nullInputStream();
+        }
+        final InputStream in = iterator.next();
+        return new FilterInputStream(in == null ? InputStream.nullInputStream() : in) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    iterator.close();
+                }
+            }
+        };
+    }
+
+    private <T> T selectFirst(final ResultIterator.RowReader<T> reader, final T defaultValue) {
+        try (ResultIterator<T> iterator = openIterator(rs -> reader)) {
+            return iterator.hasNext() ? iterator.next() : defaultValue;
+        }
+    }
+
+    private static long transfer(final ReadableByteChannel source, final WritableByteChannel target) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        long transferred = 0;
+        try {
+            while (source.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    transferred += target.write(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return transferred;
+    }
+
+    /**
+     * SELECT문의 결과를 JSON 배열로 흘려보낸다. 각 row는 컬럼 이름을 key로 하는 객체 하나다
+     * <p>
+     * 스트리밍 모드로 조회하면서 row마다 컬럼 값을 타입에 맞는 getter로 읽어 바로 쓰므로 결과 크기와 관계없이 메모리를 적게 쓴다.
+     * 날짜/시간은 ISO-8601 문자열, BIT(1)은 boolean, BLOB은 base64 문자열로 쓴다. 조회에 실패하면 빈 배열을 쓴다.
+     *
+     * @param out UTF-8 JSON을 쓸 stream. 닫지 않는다
+     * @return 쓴 row 수
+     * @throws UncheckedIOException stream에 쓰지 못한 경우
+     */
+    public long exportJson(final OutputStream out) {
+        try (JsonGenerator generator = ResultSetExporter.OBJECT_MAPPER.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            final long rows = export(rs -> {
+                final ResultSetExporter exporter = ResultSetExporter.of(rs.getMetaData());
+                return row -> {
+                    try {
+                        exporter.writeJson(row, generator);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return Boolean.TRUE;
+                };
+            });
+            generator.writeEndArray();
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * SELECT문의 결과를 RFC 4180 CSV로 흘려보낸다. 첫 줄은 컬럼 이름이고 NULL은 빈 필드다
+     * <p>
+     * 조회에 실패하면 아무것도 쓰지 않는다.
+     *
+     * @param writer CSV를 쓸 writer. 닫지 않는다
+     * @return 쓴 row 수. 헤더는 세지 않는다
+     * @throws UncheckedIOException writer에 쓰지 못한 경우
+     */
+    public long exportCsv(final Writer writer) {
+        final long rows = export(rs -> {
+            final ResultSetExporter exporter = ResultSetExporter.of(rs.getMetaData());
+            try {
+                exporter.writeCsvHeader(writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return row -> {
+                try {
+                    exporter.writeCsv(row, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return Boolean.TRUE;
+            };
+        });
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    private long export(final ResultSetHandler<ResultIterator.RowReader<Boolean>> rowWriterFactory) {
+        long rows = 0;
+        try (ResultIterator<Boolean> iterator = openIterator(rowWriterFactory)) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * SELECT문의 결과를 정렬 키 기준으로 한 페이지씩 entity로 읽는다
+     * <p>
+     * SQL문을 derived table로 감싸 {@code WHERE (정렬 키) > (이전 페이지의 마지막 값) ORDER BY 정렬 키 LIMIT pageSize}로 조회한다.
+     * 정렬 키는 결과에 포함된 컬럼이어야 하고, 합쳐서 row를 유일하게 구분해야 하며 NULL이 없어야 한다.
+     *
+     * @param clazz    SELECT 하려는 entity의 클래스
+     * @param pageSize 페이지당 row 수
+     * @param keys     정렬 키. 예) "id", "createdDate, id", "createdDate DESC", "id DESC"
+     * @return 페이지 iterator
+     */
+    public <T> KeysetPaginator<T> paginate(final Class<T> clazz, final int pageSize, final String... keys) {
+        return paginate(pageSize, keys, rows -> {
+            final List<T> page = new ArrayList<>(rows.size());
+            final EntityMapper<T> mapper = EntityMapper.of(clazz, rows.get(0).schema());
+            for (Row row : rows) {
+                final T entity = mapper.map(row);
+                snapshot(entity);
+                page.add(entity);
+            }
+            recordRowsMapped(page.size());
+            return page;
+        });
+    }
+
+    /**
+     * SELECT문의 결과를 정렬 키 기준으로 한 페이지씩 Map으로 읽는다
+     *
+     * @see #paginate(Class, int, String...)
+     */
+    public KeysetPaginator<Map<String, Object>> paginate(final int pageSize, final String... keys) {
+        return paginate(pageSize, keys, ArrayList::new);
+    }
+
+    private <T> KeysetPaginator<T> paginate(final int pageSize, final String[] keys,
+                                            final Function<List<Row>, List<T>> pageMapper) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page size : " + pageSize);
+        }
+        final List<String> keyColumns = new ArrayList<>();
+        final List<Boolean> descending = new ArrayList<>();
+        for (String key : keys) {
+            for (String keySpec : key.split(",")) {
+                final String[] parts = keySpec.trim().split("\\s+");
+                final boolean desc = parts.length == 2 && parts[1].equalsIgnoreCase("DESC");
+                if (parts.length > 2 || !IDENTIFIER.matcher(parts[0]).matches()
+                        || parts.length == 2 && !desc && !parts[1].equalsIgnoreCase("ASC")) {
+                    throw new IllegalArgumentException("Invalid sort key : " + keySpec);
+                }
+                keyColumns.add(parts[0]);
+                descending.add(desc);
+            }
+        }
+        if (keyColumns.isEmpty()) {
+            throw new IllegalArgumentException("Sort key is required");
+        }
+        checkTemplateParamsBound();
+
+        // (k1 > ?) OR (k1 = ? AND k2 > ?) OR ...
+        final StringBuilder condition = new StringBuilder();
+        final StringBuilder orderBy = new StringBuilder(" ORDER BY ");
+        for (int i = 0; i < keyColumns.size(); i++) {
+            condition.append(i == 0 ? "(" : " OR (");
+            for (int j = 0; j < i; j++) {
+                condition.append("p.`").append(keyColumns.get(j)).append("` = ? AND ");
+            }
+            condition.append("p.`").append(keyColumns.get(i)).append(descending.get(i) ? "` < ?)" : "` > ?)");
+            orderBy.append(i == 0 ? "" : ", ").append("p.`").append(keyColumns.get(i)).append(descending.get(i) ? "` DESC" : "` ASC");
+        }
+        final String firstPageSuffix = "p" + orderBy + " LIMIT ?";
+        final String nextPageSuffix = "p WHERE " + condition + orderBy + " LIMIT ?";
+
+        return new KeysetPaginator<>(lastKey -> {
+            final Sql page;
+            if (lastKey == null) {
+                page = derivedSql("SELECT p.* FROM", firstPageSuffix, pageSize);
+            } else {
+                final List<Object> keyParams = new ArrayList<>();
+                for (int i = 0; i < lastKey.length; i++) {
+                    keyParams.addAll(Arrays.asList(lastKey).subList(0, i + 1));
+                }
+                keyParams.add(pageSize);
+                page = derivedSql("SELECT p.* FROM", nextPageSuffix, keyParams.toArray());
+            }
+            return page.executeQuery(null, rs -> {
+                final List<Row> rows = new ArrayList<>();
+                final RowSchema schema = RowSchema.of(rs.getMetaData());
+                while (rs.next()) {
+                    rows.add(Row.read(schema, rs));
+                }
+                return rows;
+            });
+        }, keyColumns.toArray(String[]::new), pageSize, pageMapper);
+    }
+
+    /**
+     * {@link #insert()}를 다른 스레드에서 실행한다. 호출한 스레드의 트랜잭션 밖에서 실행된다
+     */
+    public CompletableFuture<Long> insertAsync() {
+        return async(this::insert);
+    }
+
+    /**
+     * {@link #update()}를 다른 스레드에서 실행한다. 호출한 스레드의 트랜잭션 밖에서 실행된다
+     */
+    public CompletableFuture<Integer> updateAsync() {
+        return async(this::update);
+    }
+
+    /**
+     * {@link #delete()}를 다른 스레드에서 실행한다. 호출한 스레드의 트랜잭션 밖에서 실행된다
+     */
+    public CompletableFuture<Integer> deleteAsync() {
+        return async(this::delete);
+    }
+
+    /**
+     * {@link #selectRows()}를 다른 스레드에서 실행한다. 호출한 스레드의 트랜잭션 밖에서 실행된다
+     */
+    public CompletableFuture<List<Map<String, Object>>> selectRowsAsync() {
+        return async(this::selectRows);
+    }
+
+    /**
+     * {@link #selectRow(Class)}를 다른 스레드에서 실행한다. 호출한 스레드의 트랜잭션 밖에서 실행된다
+     */
+    public <T> CompletableFuture<T> selectRowAsync(final Class<T> clazz) {
+        return async(() -> selectRow(clazz));
+    }
+
+    /**
+     * {@link #selectRows(Class)}를 다른 스레드에서 실행한다. 호출한 스레드의 트랜잭션 밖에서 실행된다
+     */
+    public <T> CompletableFuture<List<T>> selectRowsAsync(final Class<T> clazz) {
+        return async(() -> selectRows(clazz));
+    }
+
+    /**
+     * {@link #selectLong()}을 다른 스레드에서 실행한다. 호출한 스레드의 트랜잭션 밖에서 실행된다
+     */
+    public CompletableFuture<Long> selectLongAsync() {
+        return async(this::selectLong);
+    }
+
+    /**
+     * SimpleDb의 비동기 실행기에서 실행한다. 고정된 커넥션을 쓰는 Sql은 커넥션을 여러 스레드가 공유하지 않도록 바로 실행한다
+     * <p>
+     * 동시에 실행 중인 작업이 커넥션 풀 크기만큼 있으면 작업이 자리가 날 때까지 기다린다. 호출한 스레드는 기다리지 않는다
+     */
+    private <T> CompletableFuture<T> async(final Supplier<T> task) {
+        if (simpleDb == null) {
+            return CompletableFuture.completedFuture(task.get());
+        }
+        return simpleDb.asyncExecutor().submit(task);
+    }
+
+    /**
+     * 이 Sql의 조회는 복제 서버 대신 주 서버에서 실행한다. 방금 쓴 내용을 바로 읽어야 할 때 사용한다
+     * <p>
+     * 복제 서버에서 읽어 캐시된 결과도 사용하지 않는다.
+     */
+    public Sql fromPrimary() {
+        fromPrimary = true;
+        return this;
+    }
+
+    /**
+     * 이 Sql의 조회는 {@link SimpleDb#enableQueryCache}로 켠 조회 결과 캐시를 사용하지 않는다
+     */
+    public Sql skipCache() {
+        useQueryCache = false;
+        return this;
+    }
+
+    /**
+     * appendBulkIn으로 추가한 IN 목록의 위치
+     *
+     * @param statement      펼치기 전의 statement
+     * @param statementStart SQL문에서 펼친 statement가 시작하는 위치
+     * @param statementEnd   SQL문에서 펼친 statement가 끝나는 위치
+     * @param paramStart     IN 목록의 첫 번째 인자값 위치
+     * @param values         IN 목록의 값들
+     */
+    private record BulkIn(String statement, int statementStart, int statementEnd, int paramStart, List<Object> values) {
+    }
+
+    private boolean isChunkedBulkIn() {
+        return bulkIn != null && bulkIn.values().size() > bulkInChunkSize;
+    }
+
+    /**
+     * IN 목록을 chunk로 나눈 Sql마다 execution을 실행한다
+     *
+     * @return chunk 순서대로의 실행 결과
+     */
+    private <T> List<T> executeChunks(final Function<Sql, T> execution) {
+        checkTemplateParamsBound();
+        final List<Sql> chunks = new ArrayList<>();
+        final List<Object> values = bulkIn.values();
+        for (int from = 0; from < values.size(); from += bulkInChunkSize) {
+            chunks.add(chunkSql(values.subList(from, Math.min(from + bulkInChunkSize, values.size()))));
+        }
+        final List<T> results = new ArrayList<>(chunks.size());
+        // 트랜잭션 커넥션과 고정된 커넥션은 여러 스레드가 공유할 수 없다.
+        // 비동기 작업 안이면 실행 자리를 잡은 채로 chunk의 자리를 기다리지 않도록 그 스레드에서 차례로 실행한다
+        if (simpleDb == null || simpleDb.isInTransaction() || simpleDb.asyncExecutor().isInTask()) {
+            for (Sql chunk : chunks) {
+                results.add(execution.apply(chunk));
+            }
+            return results;
+        }
+        final List<CompletableFuture<T>> futures = new ArrayList<>(chunks.size());
+        for (Sql chunk : chunks) {
+            futures.add(simpleDb.asyncExecutor().submit(() -> execution.apply(chunk)));
+        }
+        for (CompletableFuture<T> future : futures) {
+            results.add(join(future));
+        }
+        return results;
+    }
+
+    /**
+     * IN 목록의 일부만 담은 Sql. 나머지 SQL문과 인자값은 그대로 복사한다
+     */
+    private Sql chunkSql(final List<Object> chunkValues) {
+        final Sql chunk = new Sql(this);
+        chunk.statementBuilder.append(statementBuilder, 0, bulkIn.statementStart());
+        chunk.params.addAll(params.subList(0, bulkIn.paramStart()));
+        chunk.appendIn(bulkIn.statement(), chunkValues.toArray());
+        chunk.statementBuilder.append(statementBuilder, bulkIn.statementEnd(), statementBuilder.length());
+        chunk.params.addAll(params.subList(bulkIn.paramStart() + bulkIn.values().size(), params.size()));
+        return chunk;
+    }
+
+    /**
+     * 키 범위마다 SELECT문을 실행한다. 동시에 실행되는 범위는 최대 parallelism 개다
+     * <p>
+     * SimpleDb가 가진 fork/join 풀에서 작업자 parallelism 개가 앞 범위부터 하나씩 가져가 실행한다. 범위를 작업자 수보다
+     * 잘게 나눠 두므로 키가 한쪽에 몰려 있어 어떤 범위가 오래 걸려도 남은 범위는 놀고 있는 작업자가 가져간다.
+     * 비동기 실행기의 자리를 쓰지 않으므로 비동기 작업 안에서 호출해도 서로 기다리지 않는다.
+     *
+     * @return 범위 순서대로 결과를 돌려주는 supplier와 아직 실행되지 않은 범위를 취소하는 작업. 조회 결과가 없으면 빈 list
+     */
+    private <T> Partitions<T> executePartitions(final Class<T> clazz, final String partitionColumn, final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Invalid parallelism : " + parallelism);
+        }
+        if (!IDENTIFIER.matcher(partitionColumn).matches()) {
+            throw new IllegalArgumentException("Invalid partition column : " + partitionColumn);
+        }
+        checkTemplateParamsBound();
+        final String column = "p.`" + partitionColumn + "`";
+        final long[] bounds = derivedSql("SELECT MIN(" + column + "), MAX(" + column + ") FROM", "p")
+                .executeQuery(null, rs -> {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    final long min = rs.getLong(1);
+                    if (rs.wasNull()) {
+                        return null;
+                    }
+                    final long max = rs.getLong(2);
+                    return rs.wasNull() ? null : new long[]{min, max};
+                });
+        if (bounds == null) {
+            // 빈 결과이거나 MIN/MAX가 NULL이면 범위 조회를 하지 않는다
+            return new Partitions<>(List.of(), () -> {
+            });
+        }
+        final long min = bounds[0];
+        final long max = bounds[1];
+        // max - min은 long 범위를 넘을 수 있으므로 부호 없는 값으로 다룬다
+        final long rangeSize = partitionSize > 0 ? partitionSize
+                : Long.divideUnsigned(max - min, (long) parallelism * RANGES_PER_WORKER) + 1;
+        final List<Sql> rangeSqls = new ArrayList<>();
+        for (long from = min; ; from += rangeSize) {
+            // 마지막 범위에서 멈추므로 from + rangeSize가 max를 넘지 않는다
+            final long to = Long.compareUnsigned(max - from, rangeSize) < 0 ? max : from + rangeSize - 1;
+            rangeSqls.add(derivedSql("SELECT p.* FROM", "p WHERE " + column + " BETWEEN ? AND ? ORDER BY " + column, from, to));
+            if (to == max) {
+                break;
+            }
+        }
+
+        final List<Supplier<List<T>>> partitions = new ArrayList<>(rangeSqls.size());
+        if (simpleDb == null || simpleDb.isInTransaction()) {
+            for (Sql rangeSql : rangeSqls) {
+                partitions.add(() -> rangeSql.selectRows(clazz));
+            }
+            return new Partitions<>(partitions, () -> {
+            });
+        }
+        final List<CompletableFuture<List<T>>> futures = new ArrayList<>(rangeSqls.size());
+        for (int i = 0; i < rangeSqls.size(); i++) {
+            final CompletableFuture<List<T>> future = new CompletableFuture<>();
+            futures.add(future);
+            partitions.add(() -> join(future));
+        }
+        final ForkJoinPool pool = simpleDb.partitionPool();
+        // 풀은 최대 커넥션 수만큼의 스레드만 두므로 커넥션보다 많은 작업자가 돌지 않는다
+        final int workers = Math.min(Math.min(parallelism, rangeSqls.size()), pool.getParallelism());
+        final AtomicInteger nextRange = new AtomicInteger();
+        final List<PartitionTask<T>> tasks = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            tasks.add(new PartitionTask<>(clazz, rangeSqls, futures, nextRange));
+        }
+        final Runnable cancel = () -> {
+            for (CompletableFuture<List<T>> future : futures) {
+                future.cancel(false);
+            }
+        };
+        try {
+            pool.execute(() -> {
+                try {
+                    ForkJoinTask.invokeAll(tasks);
+                } finally {
+                    for (CompletableFuture<List<T>> future : futures) {
+                        future.completeExceptionally(new IllegalStateException("Partition was not executed"));
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 풀 크기를 바꾸는 사이 닫힌 풀을 받은 경우
+            for (CompletableFuture<List<T>> future : futures) {
+                future.completeExceptionally(e);
+            }
+        }
+        return new Partitions<>(partitions, cancel);
+    }
+
+    /**
+     * 범위별 결과 supplier와 아직 실행되지 않은 범위를 취소하는 작업
+     */
+    private record Partitions<T>(List<Supplier<List<T>>> results, Runnable cancel) {
+    }
+
+    /**
+     * 남은 범위를 앞에서부터 하나씩 가져가 실행하는 작업자. 이미 취소된 범위는 건너뛴다
+     */
+    private static final class PartitionTask<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Class<T> clazz;
+        private final List<Sql> rangeSqls;
+        private final List<CompletableFuture<List<T>>> futures;
+        private final AtomicInteger nextRange;
+
+        private PartitionTask(final Class<T> clazz, final List<Sql> rangeSqls, final List<CompletableFuture<List<T>>> futures,
+                              final AtomicInteger nextRange) {
+            this.clazz = clazz;
+            this.rangeSqls = rangeSqls;
+            this.futures = futures;
+            this.nextRange = nextRange;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = nextRange.getAndIncrement(); i < rangeSqls.size(); i = nextRange.getAndIncrement()) {
+                final CompletableFuture<List<T>> future = futures.get(i);
+                if (future.isDone()) {
+                    continue;
+                }
+                try {
+                    future.complete(rangeSqls.get(i).selectRows(clazz));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 이 Sql의 SQL문을 derived table로 감싼 Sql. 인자값은 그대로 복사하고 extraParams를 뒤에 붙인다
+     */
+    private Sql derivedSql(final String prefix, final String suffix, final Object... extraParams) {
+        final Sql derived = new Sql(this);
+        derived.statementBuilder.append(prefix).append(" (").append(statement()).append(") ").append(suffix);
+        derived.params.addAll(params);
+        derived.params.addAll(Arrays.asList(extraParams));
+        return derived;
+    }
+
+    private static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static <T> List<T> concat(final List<List<T>> lists) {
+        int size = 0;
+        for (List<T> list : lists) {
+            size += list.size();
+        }
+        final List<T> merged = new ArrayList<>(size);
+        for (List<T> list : lists) {
+            merged.addAll(list);
+        }
+        return merged;
+    }
+
+    private static int sum(final List<Integer> counts) {
+        int sum = 0;
+        for (int count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    /**
+     * 템플릿 인자를 바인딩할 PreparedStatement setter
+     */
+    private enum TemplateParamType {
+        OBJECT, LONG, INT, DOUBLE, BOOLEAN, STRING, DATETIME
+    }
+
+    @FunctionalInterface
+    private interface ResultSetHandler<T> {
+        T handle(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface RowsHandler<T> {
+        T handle(List<Row> rows);
+    }
+
+    /**
+     * 조회 결과 캐시를 사용할 수 있으면 캐시된 row로 결과를 만들고, 아니면 handler로 SELECT문을 실행한다
+     * <p>
+     * 트랜잭션 안의 조회, 주 서버에서 읽는 조회와 테이블을 읽지 않는 조회(SELECT NOW() 등)는 캐시하지 않는다.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T executeCachedQuery(final T defaultValue, final ResultSetHandler<T> handler, final RowsHandler<T> rowsHandler) {
+        final QueryCache queryCache = usableQueryCache();
+        final Set<String> tables = queryCache == null ? Set.of() : QueryCache.tablesOf(statement());
+        if (tables.isEmpty()) {
+            return executeQuery(defaultValue, handler);
+        }
+        final QueryCache.Key key = QueryCache.keyOf(Row.class, statement(), params());
+        List<Row> rows = (List<Row>) queryCache.get(key);
+        if (rows == null) {
+            final long generation = queryCache.generation();
+            rows = executeQuery(null, rs -> {
+                final List<Row> resultRows = new ArrayList<>();
+                final RowSchema schema = RowSchema.of(rs.getMetaData());
+                while (rs.next()) {
+                    resultRows.add(Row.read(schema, rs));
+                }
+                return resultRows;
+            });
+            if (rows == null) {
+                return defaultValue;
+            }
+            queryCache.put(key, rows, tables, generation);
+        }
+        return rowsHandler.handle(rows);
+    }
+
+    /**
+     * row로 담으면 getString, getTimestamp 같은 getter의 변환이나 컬럼 타입 정보를 잃는 결과를 결과 그대로 캐시한다
+     * <p>
+     * 캐시에는 결과의 사본을 넣고, 캐시에서 꺼낸 결과도 copier로 복사해서 돌려주므로 호출한 쪽이 결과를 바꿔도 된다.
+     * 결과가 null이면 캐시하지 않는다.
+     *
+     * @param resultType 캐시 키에 넣을 결과 타입. 같은 SQL문을 다른 방법으로 읽은 결과와 구분한다
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T executeCachedResult(final Class<?> resultType, final T defaultValue, final ResultSetHandler<T> handler,
+                                      final UnaryOperator<T> copier) {
+        final QueryCache queryCache = usableQueryCache();
+        final Set<String> tables = queryCache == null ? Set.of() : QueryCache.tablesOf(statement());
+        if (tables.isEmpty()) {
+            return executeQuery(defaultValue, handler);
+        }
+        final QueryCache.Key key = QueryCache.keyOf(resultType, statement(), params());
+        final T cached = (T) queryCache.get(key);
+        if (cached != null) {
+            return copier.apply(cached);
+        }
+        final long generation = queryCache.generation();
+        // 실패와 NULL 결과를 구분하기 위해 결과를 배열에 담아 받는다
+        final Object[] result = executeQuery(null, rs -> new Object[]{handler.handle(rs)});
+        if (result == null) {
+            return defaultValue;
+        }
+        if (result[0] != null) {
+            queryCache.put(key, copier.apply((T) result[0]), tables, generation);
+        }
+        return (T) result[0];
+    }
+
+    /**
+     * @return 이 Sql의 조회에 쓸 수 있는 조회 결과 캐시. 캐시가 꺼져 있거나, 트랜잭션 안이거나, 주 서버에서 읽으면 null
+     */
+    private QueryCache usableQueryCache() {
+        final QueryCache queryCache = simpleDb == null ? null : simpleDb.queryCache();
+        if (queryCache == null || !useQueryCache || fromPrimary || simpleDb.isInTransaction()) {
+            return null;
+        }
+        return queryCache;
+    }
+
+    private void invalidateQueryCache() {
+        if (simpleDb != null) {
+            simpleDb.invalidateQueryCache(statement());
+        }
+    }
+
+    private static long toLong(final Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof Boolean bool) {
+            return bool ? 1L : 0L;
+        }
+        return Long.parseLong(value.toString().trim());
+    }
+
+    /**
+     * SELECT문을 실행하고 결과를 handler로 변환한다. 실패하면 경고를 남기고 defaultValue를 돌려준다
+     */
+    private <T> T executeQuery(final T defaultValue, final ResultSetHandler<T> handler) {
+        PooledConnection pooledConnection = null;
+        try {
+            pooledConnection = acquireReadConnection();
+            final PreparedStatement psmt = pooledConnection.prepareStatement(statement(), false);
+            try {
+                setObjectsToStatement(psmt);
+                final long startNanos = System.nanoTime();
+                final T result;
+                try (ResultSet rs = psmt.executeQuery()) {
+                    result = handler.handle(rs);
+                }
+                recordExecution(pooledConnection, StatementType.SELECT, startNanos, rowCountOf(result));
+                return result;
+            } finally {
+                pooledConnection.releaseStatement(psmt);
+            }
+        } catch (SQLException e) {
+            recordError(e);
+            logger.warning("Failed to execute SELECT query : " + e.getMessage());
+            return defaultValue;
+        } finally {
+            releaseConnection(pooledConnection);
+        }
+    }
+
+    /**
+     * UPDATE, DELETE문을 실행한다
+     *
+     * @return 변경된 row 개수, 실패하면 0
+     */
+    private int executeUpdate(final StatementType type) {
+        PooledConnection pooledConnection = null;
+        try {
+            pooledConnection = acquireConnection();
+            final PreparedStatement psmt = pooledConnection.prepareStatement(statement(), false);
+            try {
+                setObjectsToStatement(psmt);
+                final long startNanos = System.nanoTime();
+                final int updatedCount = psmt.executeUpdate();
+                recordExecution(pooledConnection, type, startNanos, updatedCount);
+                return updatedCount;
+            } finally {
+                pooledConnection.releaseStatement(psmt);
+            }
+        } catch (SQLException e) {
+            recordError(e);
+            logger.warning("Failed to execute " + type + " query : " + e.getMessage());
+            return 0;
+        } finally {
+            releaseConnection(pooledConnection);
+            invalidateQueryCache();
+        }
+    }
+
+    /**
+     * 스트리밍용 statement로 SELECT문을 실행한다. statement 캐시를 쓰지 않고, iterator가 닫힐 때 커넥션을 반납한다
+     */
+    private <T> ResultIterator<T> openIterator(final ResultSetHandler<ResultIterator.RowReader<T>> rowReaderFactory) {
+        PooledConnection pooledConnection = null;
+        PreparedStatement psmt = null;
+        try {
+            pooledConnection = acquireReadConnection();
+            psmt = pooledConnection.connection().prepareStatement(statement(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            psmt.setFetchSize(fetchSize);
+            setObjectsToStatement(psmt);
+            final long startNanos = System.nanoTime();
+            final ResultSet rs = psmt.executeQuery();
+            // 스트리밍 조회는 첫 응답까지의 시간을 기록하고, row 수는 읽을 때마다 더한다.
+            // 결과를 읽는 동안에는 같은 커넥션에서 EXPLAIN을 실행할 수 없다
+            recordExecution(null, StatementType.SELECT, startNanos, 0);
+            final ResultIterator.RowReader<T> rowReader = rowReaderFactory.handle(rs);
+            final PooledConnection streamingConnection = pooledConnection;
+            return new ResultIterator<>(psmt, rs, row -> {
+                final T value = rowReader.read(row);
+                recordRowsReturned(1);
+                return value;
+            }, () -> releaseConnection(streamingConnection));
+        } catch (SQLException e) {
+            recordError(e);
+            logger.warning("Failed to execute SELECT query : " + e.getMessage());
+            closeStreaming(psmt, pooledConnection);
+            return ResultIterator.empty();
+        } catch (RuntimeException e) {
+            // rowReaderFactory가 던진 예외(export 대상에 쓰지 못한 경우 등)는 정리한 뒤 그대로 던진다
+            closeStreaming(psmt, pooledConnection);
+            throw e;
+        }
+    }
+
+    private void closeStreaming(final PreparedStatement psmt, final PooledConnection pooledConnection) {
+        if (psmt != null) {
+            try {
+                psmt.close();
+            } catch (SQLException ignored) {
+                // 커넥션을 반납하면서 정리된다
+            }
+        }
+        releaseConnection(pooledConnection);
+    }
+
+    private SqlMetrics metrics() {
+        return simpleDb == null ? null : simpleDb.getMetrics();
+    }
+
+    private void recordExecution(final PooledConnection pooledConnection, final StatementType type, final long startNanos,
+                                 final long rows) {
+        if (simpleDb != null) {
+            simpleDb.recordExecution(pooledConnection, type, this, startNanos, rows);
+        }
+    }
+
+    private void recordRowsReturned(final long rows) {
+        final SqlMetrics metrics = metrics();
+        if (metrics != null) {
+            metrics.recordRowsReturned(rows);
+        }
+    }
+
+    private void recordRowsMapped(final long rows) {
+        final SqlMetrics metrics = metrics();
+        if (metrics != null) {
+            metrics.recordRowsMapped(rows);
+        }
+    }
+
+    private <T> void snapshot(final T entity) {
+        if (simpleDb != null) {
+            simpleDb.snapshot(entity);
+        }
+    }
+
+    private void recordError(final SQLException e) {
+        if (simpleDb != null) {
+            simpleDb.recordError(e);
+        }
+    }
+
+    /**
+     * 조회 결과가 담고 있는 row 수. 단일 값 결과는 1로 센다
+     */
+    static long rowCountOf(final Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Map<?, ?> map) {
+            return map.isEmpty() ? 0 : 1;
+        }
+        if (result instanceof Column column) {
+            return column.size();
+        }
+        if (result instanceof ColumnarResult columnarResult) {
+            return columnarResult.getRowCount();
+        }
+        return 1;
+    }
+
+    private PooledConnection acquireConnection() throws SQLException {
+        if (simpleDb == null) {
+            return fixedConnection;
+        }
+        return simpleDb.acquireConnection();
+    }
+
+    private PooledConnection acquireReadConnection() throws SQLException {
+        if (simpleDb == null) {
+            return fixedConnection;
+        }
+        return simpleDb.acquireReadConnection(fromPrimary);
+    }
+
+    private void releaseConnection(final PooledConnection pooledConnection) {
+        if (simpleDb != null) {
+            simpleDb.releaseConnection(pooledConnection);
+        }
+    }
+
+    String statement() {
+        if (statement == null) {
+            statement = statementBuilder.toString();
+        }
+        return statement;
+    }
+
+    /**
+     * @return placeholder 순서대로의 인자값. 템플릿으로 만든 Sql은 템플릿 인자값을 boxing 해서 새 List로 만든다
+     */
+    List<Object> params() {
+        if (template == null) {
+            return params;
+        }
+        final List<Object> allParams = new ArrayList<>(template.slotCount() + params.size());
+        for (int slot = 0; slot < template.slotCount(); slot++) {
+            allParams.add(templateParamValue(template.slotParameter(slot)));
+        }
+        allParams.addAll(params);
+        return allParams;
+    }
+
+    private Object templateParamValue(final int parameterIndex) {
+        final TemplateParamType type = templateTypes[parameterIndex];
+        if (type == null) {
+            return null;
+        }
+        final long primitive = templatePrimitives[parameterIndex];
+        return switch (type) {
+            case LONG -> primitive;
+            case INT -> (int) primitive;
+            case DOUBLE -> Double.longBitsToDouble(primitive);
+            case BOOLEAN -> primitive != 0;
+            case OBJECT, STRING, DATETIME -> templateValues[parameterIndex];
+        };
+    }
+
+    boolean isFromPrimary() {
+        return fromPrimary;
+    }
+
+    private void setObjectsToStatement(PreparedStatement psmt) throws SQLException {
+        bindParams(psmt, 0);
+    }
+
+    /**
+     * 여러 SQL문을 이어 붙인 statement에 이 Sql의 인자값을 offset 다음 위치부터 바인딩한다
+     *
+     * @return 마지막으로 바인딩한 인자 위치
+     */
+    int bindParams(final PreparedStatement psmt, final int offset) throws SQLException {
+        checkTemplateParamsBound();
+        int index = offset;
+        if (template != null) {
+            for (int slot = 0; slot < template.slotCount(); slot++) {
+                bindTemplateParam(psmt, ++index, template.slotParameter(slot));
+            }
+        }
+        for (int i = 0; i < params.size(); i++) {
+            bindParam(psmt, ++index, params.get(i));
+        }
+        return index;
+    }
+
+    /**
+     * 템플릿 인자를 지정한 타입의 setter로 바인딩한다. 기본 타입 값은 boxing 없이 넘긴다
+     */
+    private void bindTemplateParam(final PreparedStatement psmt, final int index, final int parameterIndex)
+            throws SQLException {
+        final long primitive = templatePrimitives[parameterIndex];
+        final Object value = templateValues[parameterIndex];
+        switch (templateTypes[parameterIndex]) {
+            case LONG -> psmt.setLong(index, primitive);
+            case INT -> psmt.setInt(index, (int) primitive);
+            case DOUBLE -> psmt.setDouble(index, Double.longBitsToDouble(primitive));
+            case BOOLEAN -> psmt.setBoolean(index, primitive != 0);
+            case STRING -> psmt.setString(index, (String) value);
+            case DATETIME -> psmt.setTimestamp(index, value == null ? null : Timestamp.valueOf((LocalDateTime) value));
+            case OBJECT -> bindParam(psmt, index, value);
+        }
+    }
+
+    /**
+     * 인자값 하나를 바인딩한다. Reader, InputStream, ReadableByteChannel은 해당 setter로,
+     * 나머지는 setObject로 바인딩한다. 스트림은 값 전체를 메모리에 만들지 않고 드라이버가 읽어 간다
+     */
+    static void bindParam(final PreparedStatement psmt, final int index, final Object param) throws SQLException {
+        if (param instanceof Reader reader) {
+            psmt.setCharacterStream(index, reader);
+        } else if (param instanceof InputStream inputStream) {
+            psmt.setBinaryStream(index, inputStream);
+        } else if (param instanceof ReadableByteChannel channel) {
+            psmt.setBinaryStream(index, Channels.newInputStream(channel));
+        } else {
+            psmt.setObject(index, param);
+        }
     }
 }
@@ -0,0 +1,20 @@
+package com.simpledb;
+
+import java.sql.SQLException;
+
+/**
+ * 결과를 기본값으로 대신할 수 없는 곳에서 SQL 실행이 실패했을 때 던지는 예외
+ */
+public class SqlExecutionException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SqlExecutionException(final String message, final SQLException cause) {
+        super(message + " : " + cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
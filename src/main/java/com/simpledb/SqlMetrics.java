@@ -0,0 +1,138 @@
+package com.simpledb;
+
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * SimpleDb의 실행 지표
+ * <p>
+ * SQL문 종류별 실행 시간, 조회/변환한 row 수, 커넥션 획득 시간, SQLState별 실패 횟수를 기록한다.
+ * 기록은 락 없이 이루어지고 객체를 만들지 않으므로 운영 환경에서 항상 켜 둘 수 있다.
+ */
+public class SqlMetrics implements SqlMetricsMXBean {
+
+    private static final String UNKNOWN_SQL_STATE = "UNKNOWN";
+
+    private final LatencyHistogram[] statementLatencies = new LatencyHistogram[StatementType.values().length];
+    private final LatencyHistogram connectionAcquireLatency = new LatencyHistogram();
+    private final LongAdder rowsReturned = new LongAdder();
+    private final LongAdder rowsMapped = new LongAdder();
+    private final Map<String, LongAdder> errorCounts = new ConcurrentHashMap<>();
+    private final IntSupplier activeConnections;
+    private final IntSupplier idleConnections;
+
+    SqlMetrics(final IntSupplier activeConnections, final IntSupplier idleConnections) {
+        for (int i = 0; i < statementLatencies.length; i++) {
+            statementLatencies[i] = new LatencyHistogram();
+        }
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+    }
+
+    void recordStatement(final StatementType type, final long nanos, final long rows) {
+        statementLatencies[type.ordinal()].record(nanos);
+        if (rows > 0 && type == StatementType.SELECT) {
+            rowsReturned.add(rows);
+        }
+    }
+
+    void recordRowsReturned(final long rows) {
+        rowsReturned.add(rows);
+    }
+
+    void recordRowsMapped(final long rows) {
+        rowsMapped.add(rows);
+    }
+
+    void recordConnectionAcquire(final long nanos) {
+        connectionAcquireLatency.record(nanos);
+    }
+
+    void recordError(final SQLException e) {
+        final String sqlState = e.getSQLState() == null ? UNKNOWN_SQL_STATE : e.getSQLState();
+        LongAdder counter = errorCounts.get(sqlState);
+        if (counter == null) {
+            counter = errorCounts.computeIfAbsent(sqlState, state -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    public HistogramSnapshot getLatency(final StatementType type) {
+        return statementLatencies[type.ordinal()].snapshot();
+    }
+
+    public HistogramSnapshot getConnectionAcquireLatency() {
+        return connectionAcquireLatency.snapshot();
+    }
+
+    @Override
+    public Map<String, Long> getStatementCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        snapshots().forEach((type, snapshot) -> counts.put(type.name(), snapshot.count()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getStatementMeanMicros() {
+        final Map<String, Double> means = new TreeMap<>();
+        snapshots().forEach((type, snapshot) -> means.put(type.name(), snapshot.meanMicros()));
+        return means;
+    }
+
+    @Override
+    public Map<String, Long> getStatementP99Micros() {
+        final Map<String, Long> p99s = new TreeMap<>();
+        snapshots().forEach((type, snapshot) -> p99s.put(type.name(), snapshot.p99Micros()));
+        return p99s;
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rowsReturned.sum();
+    }
+
+    @Override
+    public long getRowsMapped() {
+        return rowsMapped.sum();
+    }
+
+    @Override
+    public double getConnectionAcquireMeanMicros() {
+        return connectionAcquireLatency.snapshot().meanMicros();
+    }
+
+    @Override
+    public long getConnectionAcquireP99Micros() {
+        return connectionAcquireLatency.snapshot().p99Micros();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return activeConnections.getAsInt();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return idleConnections.getAsInt();
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        errorCounts.forEach((sqlState, counter) -> counts.put(sqlState, counter.sum()));
+        return counts;
+    }
+
+    private Map<StatementType, HistogramSnapshot> snapshots() {
+        final Map<StatementType, HistogramSnapshot> snapshots = new EnumMap<>(StatementType.class);
+        for (StatementType type : StatementType.values()) {
+            snapshots.put(type, getLatency(type));
+        }
+        return snapshots;
+    }
+}
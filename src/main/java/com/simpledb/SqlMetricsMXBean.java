@@ -0,0 +1,41 @@
+package com.simpledb;
+
+import java.util.Map;
+
+/**
+ * JMX로 노출하는 SimpleDb 지표. {@link SimpleDb#registerMetricsMBean()}으로 등록한다
+ */
+public interface SqlMetricsMXBean {
+
+    /**
+     * @return SQL문 종류별 실행 횟수
+     */
+    Map<String, Long> getStatementCounts();
+
+    /**
+     * @return SQL문 종류별 평균 실행 시간 (µs)
+     */
+    Map<String, Double> getStatementMeanMicros();
+
+    /**
+     * @return SQL문 종류별 99 백분위 실행 시간 (µs)
+     */
+    Map<String, Long> getStatementP99Micros();
+
+    long getRowsReturned();
+
+    long getRowsMapped();
+
+    double getConnectionAcquireMeanMicros();
+
+    long getConnectionAcquireP99Micros();
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    /**
+     * @return SQLState별 실패 횟수
+     */
+    Map<String, Long> getErrorCounts();
+}
@@ -0,0 +1,215 @@
+package com.simpledb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 이름 있는 인자(:id)를 쓰는 미리 해석된 SQL문
+ * <p>
+ * 만들 때 한 번만 SQL문을 해석해서 JDBC placeholder(?)로 바꾸고 각 placeholder가 어느 인자인지 기억해 둔다.
+ * 불변 객체이므로 여러 스레드가 공유할 수 있다. 실행할 때마다 {@link SimpleDb#genSql(SqlTemplate)}로 Sql을 만들어
+ * {@link Sql#setLong(String, long)} 같은 타입별 setter로 값을 바인딩한다.
+ *
+ * <pre>{@code
+ * static final SqlTemplate FIND_BY_ID = SqlTemplate.of("SELECT * FROM article WHERE id = :id");
+ *
+ * Article article = simpleDb.genSql(FIND_BY_ID).setLong("id", 1).selectRow(Article.class);
+ * }</pre>
+ */
+public final class SqlTemplate {
+
+    private final String sql;
+    /**
+     * Sql에 넣을 때 쓰는 SQL문. append와 같이 뒤에 공백을 붙여 둔다
+     */
+    private final String statement;
+    private final String[] names;
+    /**
+     * placeholder 순서대로의 인자 번호 (names의 index)
+     */
+    private final int[] slotNames;
+
+    private SqlTemplate(final String sql, final String[] names, final int[] slotNames) {
+        this.sql = sql;
+        // 한 줄 주석으로 끝나면 뒤에 append한 SQL문이 주석이 되지 않도록 줄을 바꾼다
+        this.statement = sql + (endsInLineComment(sql) ? '\n' : ' ');
+        this.names = names;
+        this.slotNames = slotNames;
+    }
+
+    /**
+     * SQL문을 해석한다. 따옴표, backtick 안의 문자열, 주석({@code -- }, {@code #}, {@code /* *}{@code /})과
+     * {@code ::}는 인자로 보지 않는다
+     *
+     * @throws IllegalArgumentException 이름 없는 placeholder(?)가 섞여 있는 경우
+     */
+    public static SqlTemplate of(final String namedSql) {
+        final StringBuilder sql = new StringBuilder(namedSql.length());
+        final List<String> names = new ArrayList<>();
+        final List<Integer> slotNames = new ArrayList<>();
+        final int length = namedSql.length();
+        int i = 0;
+        while (i < length) {
+            final char c = namedSql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                final int end = skipQuoted(namedSql, i, c);
+                sql.append(namedSql, i, end);
+                i = end;
+            } else if (isCommentStart(namedSql, i)) {
+                final int end = skipComment(namedSql, i);
+                sql.append(namedSql, i, end);
+                i = end;
+            } else if (c == ':' && i + 1 < length && namedSql.charAt(i + 1) == ':') {
+                sql.append("::");
+                i += 2;
+            } else if (c == ':' && i + 1 < length && Character.isJavaIdentifierStart(namedSql.charAt(i + 1))) {
+                int end = i + 1;
+                while (end < length && Character.isJavaIdentifierPart(namedSql.charAt(end))) {
+                    end++;
+                }
+                final String name = namedSql.substring(i + 1, end);
+                int nameIndex = names.indexOf(name);
+                if (nameIndex < 0) {
+                    nameIndex = names.size();
+                    names.add(name);
+                }
+                slotNames.add(nameIndex);
+                sql.append('?');
+                i = end;
+            } else if (c == '?') {
+                throw new IllegalArgumentException("Positional placeholder is not allowed in a template : " + namedSql);
+            } else {
+                sql.append(c);
+                i++;
+            }
+        }
+        return new SqlTemplate(sql.toString(), names.toArray(String[]::new),
+                slotNames.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * 따옴표로 감싼 문자열이 끝나는 다음 위치. 백슬래시 escape와 두 번 연속된 따옴표를 건너뛴다
+     */
+    private static int skipQuoted(final String sql, final int start, final char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            final char c = sql.charAt(i);
+            if (c == '\\' && quote != '`') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return sql.length();
+    }
+
+    /**
+     * MySQL 주석의 시작인지 여부. {@code --}는 뒤에 공백이 있거나 SQL문이 끝나야 주석이다
+     */
+    private static boolean isCommentStart(final String sql, final int start) {
+        final char c = sql.charAt(start);
+        if (c == '#') {
+            return true;
+        }
+        if (start + 1 >= sql.length()) {
+            return false;
+        }
+        final char next = sql.charAt(start + 1);
+        if (c == '/') {
+            return next == '*';
+        }
+        return c == '-' && next == '-' && (start + 2 == sql.length() || Character.isWhitespace(sql.charAt(start + 2)));
+    }
+
+    private static boolean endsInLineComment(final String sql) {
+        int i = 0;
+        while (i < sql.length()) {
+            final char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i, c);
+            } else if (isCommentStart(sql, i)) {
+                final int end = skipComment(sql, i);
+                if (end == sql.length() && c != '/') {
+                    return sql.charAt(end - 1) != '\n';
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 주석이 끝나는 다음 위치. 한 줄 주석은 줄바꿈 문자까지 포함한다
+     */
+    private static int skipComment(final String sql, final int start) {
+        if (sql.charAt(start) == '/') {
+            final int end = sql.indexOf("*/", start + 2);
+            return end < 0 ? sql.length() : end + 2;
+        }
+        final int end = sql.indexOf('\n', start);
+        return end < 0 ? sql.length() : end + 1;
+    }
+
+    /**
+     * @return 이름 있는 인자를 placeholder(?)로 바꾼 SQL문
+     */
+    public String sql() {
+        return sql;
+    }
+
+    String statement() {
+        return statement;
+    }
+
+    /**
+     * @return 처음 나온 순서대로의 인자 이름들
+     */
+    public List<String> parameterNames() {
+        return List.of(names);
+    }
+
+    int parameterCount() {
+        return names.length;
+    }
+
+    String parameterName(final int parameterIndex) {
+        return names[parameterIndex];
+    }
+
+    /**
+     * @throws IllegalArgumentException 템플릿에 없는 이름인 경우
+     */
+    int parameterIndex(final String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown template parameter : " + name);
+    }
+
+    int slotCount() {
+        return slotNames.length;
+    }
+
+    /**
+     * @return placeholder 위치의 인자 번호
+     */
+    int slotParameter(final int slot) {
+        return slotNames[slot];
+    }
+
+    @Override
+    public String toString() {
+        return "SqlTemplate" + Arrays.toString(names) + " " + sql;
+    }
+}
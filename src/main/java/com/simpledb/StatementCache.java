@@ -0,0 +1,72 @@
+package com.simpledb;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 커넥션 하나에 속한 PreparedStatement LRU 캐시
+ * <p>
+ * 커넥션을 빌린 스레드만 사용하므로 동기화하지 않는다. 캐시에서 밀려난 statement는 바로 닫는다.
+ */
+class StatementCache {
+
+    record Key(String sql, boolean returnGeneratedKeys) {
+    }
+
+    private final Map<Key, PreparedStatement> statements;
+
+    StatementCache(final int maxSize) {
+        statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    PreparedStatement get(final Key key) {
+        final PreparedStatement psmt = statements.get(key);
+        if (psmt != null && isClosed(psmt)) {
+            statements.remove(key);
+            return null;
+        }
+        return psmt;
+    }
+
+    void put(final Key key, final PreparedStatement psmt) {
+        final PreparedStatement previous = statements.put(key, psmt);
+        if (previous != null && previous != psmt) {
+            closeQuietly(previous);
+        }
+    }
+
+    void clear() {
+        final List<PreparedStatement> closing = new ArrayList<>(statements.values());
+        statements.clear();
+        closing.forEach(StatementCache::closeQuietly);
+    }
+
+    private static boolean isClosed(final PreparedStatement psmt) {
+        try {
+            return psmt.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static void closeQuietly(final PreparedStatement psmt) {
+        try {
+            psmt.close();
+        } catch (SQLException ignored) {
+            // 커넥션이 끊어진 경우에도 캐시에서는 제거된다
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.simpledb;
+
+/**
+ * 지표를 나눠 기록하는 SQL문 종류
+ */
+public enum StatementType {
+    SELECT,
+    INSERT,
+    UPDATE,
+    DELETE,
+    BATCH,
+    RUN
+}
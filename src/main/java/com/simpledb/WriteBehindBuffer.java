@@ -0,0 +1,313 @@
+package com.simpledb;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * INSERT문을 모아서 나중에 쓰는 버퍼
+ * <p>
+ * 호출한 스레드는 큐에 넣기만 하고, 백그라운드 스레드 하나가 maxRows 개가 모이거나 flushInterval이 지나면 큐를 비운다.
+ * 같은 SQL문끼리 묶어 {@code INSERT ... VALUES (...), (...)} 하나로 실행하고, VALUES 형태가 아니면 JDBC 배치로 실행한다.
+ * 큐가 가득 차면 넣는 쪽이 기다리거나(runBehind) 거절된다(tryRunBehind). 닫을 때는 남은 row를 모두 쓴 뒤 종료한다.
+ */
+class WriteBehindBuffer {
+
+    private static final Pattern VALUES_PATTERN = Pattern.compile("\\bVALUES\\s*\\(", Pattern.CASE_INSENSITIVE);
+    private static final int MAX_CACHED_SHAPES = 256;
+
+    /**
+     * 큐에 들어가는 항목. statement가 없으면 표시 항목으로, flushed가 있으면 그때까지 넣은 row를 쓴 뒤 완료하라는 표시,
+     * 없으면 종료하라는 표시다
+     */
+    private record Entry(String statement, Object[] params, CompletableFuture<Void> flushed) {
+        boolean isMarker() {
+            return statement == null;
+        }
+    }
+
+    /**
+     * VALUES 형태의 INSERT문을 튜플 앞, 튜플, 튜플 뒤로 나눈 것
+     */
+    private record Shape(String head, String tuple, String tail) {
+        String repeat(final int rows) {
+            final StringBuilder statement = new StringBuilder(head.length() + (tuple.length() + 2) * rows + tail.length());
+            statement.append(head).append(tuple);
+            for (int i = 1; i < rows; i++) {
+                statement.append(", ").append(tuple);
+            }
+            return statement.append(tail).toString();
+        }
+    }
+
+    private final SimpleDb simpleDb;
+    private final BlockingQueue<Entry> queue;
+    private final int maxRows;
+    private final long flushIntervalNanos;
+    private final Consumer<WriteBehindFailure> failureHandler;
+    private final Map<String, Shape> shapes = new HashMap<>();
+    private final Thread flusher;
+    private volatile boolean closed;
+    private final Logger logger = Logger.getLogger(this.getClass().getName());
+
+    WriteBehindBuffer(final SimpleDb simpleDb, final int capacity, final int maxRows, final long flushIntervalMillis,
+                      final Consumer<WriteBehindFailure> failureHandler) {
+        if (capacity < 1 || maxRows < 1) {
+            throw new IllegalArgumentException("Invalid write-behind size : capacity=%d, maxRows=%d".formatted(capacity, maxRows));
+        }
+        this.simpleDb = simpleDb;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxRows = maxRows;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.failureHandler = failureHandler;
+        flusher = new Thread(this::runFlusher, "simpleDb-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 큐에 넣는다. 큐가 가득 차 있으면 자리가 날 때까지 기다린다
+     */
+    void put(final String statement, final Object[] params) throws InterruptedException {
+        checkOpen();
+        queue.put(new Entry(statement, params, null));
+    }
+
+    /**
+     * @return 큐가 가득 차서 넣지 못했으면 false
+     */
+    boolean offer(final String statement, final Object[] params) {
+        checkOpen();
+        return queue.offer(new Entry(statement, params, null));
+    }
+
+    /**
+     * 지금까지 넣은 row를 모두 쓸 때까지 기다린다
+     */
+    void flush() throws InterruptedException {
+        checkOpen();
+        final CompletableFuture<Void> flushed = new CompletableFuture<>();
+        queue.put(new Entry(null, null, flushed));
+        flushed.join();
+    }
+
+    /**
+     * 더 이상 받지 않고, 남은 row를 모두 쓴 뒤 백그라운드 스레드를 종료한다
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(new Entry(null, null, null));
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Write-behind buffer has been closed");
+        }
+    }
+
+    private void runFlusher() {
+        final List<Entry> pending = new ArrayList<>();
+        try {
+            while (true) {
+                pending.add(queue.take());
+                final long deadline = System.nanoTime() + flushIntervalNanos;
+                while (pending.size() < maxRows && !pending.get(pending.size() - 1).isMarker()) {
+                    final long remaining = deadline - System.nanoTime();
+                    final Entry next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    pending.add(next);
+                }
+                if (write(pending)) {
+                    // 종료 표시보다 늦게 들어온 row까지 쓴다
+                    pending.clear();
+                    queue.drainTo(pending);
+                    write(pending);
+                    return;
+                }
+                pending.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // 백그라운드 스레드가 비정상 종료해도 flush()를 기다리는 스레드가 멈추지 않도록 남은 flush 표시를 완료한다
+            closed = true;
+            queue.drainTo(pending);
+            completeFlushes(pending);
+        }
+    }
+
+    private static void completeFlushes(final List<Entry> entries) {
+        for (Entry entry : entries) {
+            if (entry.flushed() != null) {
+                entry.flushed().complete(null);
+            }
+        }
+    }
+
+    /**
+     * 같은 SQL문끼리 묶어 쓰고, 쓰기를 기다리는 flush 표시를 완료한다. 쓰기에 실패해도 flush 표시는 완료한다
+     *
+     * @return 종료 표시가 있었으면 true
+     */
+    private boolean write(final List<Entry> entries) {
+        final Map<String, List<Object[]>> rowsByStatement = new LinkedHashMap<>();
+        final List<CompletableFuture<Void>> flushes = new ArrayList<>();
+        boolean stop = false;
+        for (Entry entry : entries) {
+            if (!entry.isMarker()) {
+                rowsByStatement.computeIfAbsent(entry.statement(), statement -> new ArrayList<>()).add(entry.params());
+            } else if (entry.flushed() != null) {
+                flushes.add(entry.flushed());
+            } else {
+                stop = true;
+            }
+        }
+        try {
+            rowsByStatement.forEach((statement, rows) -> {
+                for (int from = 0; from < rows.size(); from += maxRows) {
+                    write(statement, rows.subList(from, Math.min(from + maxRows, rows.size())));
+                }
+            });
+        } finally {
+            flushes.forEach(flushed -> flushed.complete(null));
+        }
+        return stop;
+    }
+
+    /**
+     * 실패하면 failureHandler에 알린다. RuntimeException도 잡아서 백그라운드 스레드가 죽지 않게 한다
+     */
+    private void write(final String statement, final List<Object[]> rows) {
+        PooledConnection pooledConnection = null;
+        try {
+            final Shape shape = shapeOf(statement);
+            pooledConnection = simpleDb.acquireConnection();
+            if (shape == null) {
+                writeBatch(pooledConnection, statement, rows);
+            } else {
+                writeMultiRow(pooledConnection, shape.repeat(rows.size()), rows);
+            }
+        } catch (SQLException e) {
+            simpleDb.getMetrics().recordError(e);
+            reportFailure(statement, rows, e);
+        } catch (RuntimeException e) {
+            reportFailure(statement, rows, e);
+        } finally {
+            simpleDb.releaseConnection(pooledConnection);
+            simpleDb.invalidateQueryCache(statement);
+        }
+    }
+
+    private void reportFailure(final String statement, final List<Object[]> rows, final Exception cause) {
+        try {
+            // 실패 원인이 null 인자값 배열일 수 있으므로 null을 허용하지 않는 List.copyOf는 쓰지 않는다
+            failureHandler.accept(new WriteBehindFailure(statement, Collections.unmodifiableList(new ArrayList<>(rows)), cause));
+        } catch (RuntimeException handlerException) {
+            logger.warning("Write-behind failure handler threw : " + handlerException.getMessage());
+        }
+    }
+
+    private void writeMultiRow(final PooledConnection pooledConnection, final String multiRowStatement,
+                               final List<Object[]> rows) throws SQLException {
+        final List<Object> params = new ArrayList<>();
+        for (Object[] row : rows) {
+            params.addAll(Arrays.asList(row));
+        }
+        final PreparedStatement psmt = pooledConnection.prepareStatement(multiRowStatement, false);
+        try {
+            for (int i = 0; i < params.size(); i++) {
+                Sql.bindParam(psmt, i + 1, params.get(i));
+            }
+            final long startNanos = System.nanoTime();
+            final int insertedCount = psmt.executeUpdate();
+            simpleDb.recordExecution(pooledConnection, StatementType.INSERT, multiRowStatement, params, startNanos, insertedCount);
+        } finally {
+            pooledConnection.releaseStatement(psmt);
+        }
+    }
+
+    private void writeBatch(final PooledConnection pooledConnection, final String statement, final List<Object[]> rows)
+            throws SQLException {
+        final PreparedStatement psmt = pooledConnection.prepareStatement(statement, false);
+        try {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    Sql.bindParam(psmt, i + 1, row[i]);
+                }
+                psmt.addBatch();
+            }
+            final long startNanos = System.nanoTime();
+            psmt.executeBatch();
+            simpleDb.recordExecution(null, StatementType.BATCH, statement, List.of(), startNanos, rows.size());
+        } finally {
+            psmt.clearBatch();
+            pooledConnection.releaseStatement(psmt);
+        }
+    }
+
+    /**
+     * @return VALUES 튜플이 하나인 INSERT문이면 그 모양, 아니면 null
+     */
+    private Shape shapeOf(final String statement) {
+        if (shapes.size() > MAX_CACHED_SHAPES) {
+            shapes.clear();
+        }
+        return shapes.computeIfAbsent(statement, WriteBehindBuffer::parseShape);
+    }
+
+    private static Shape parseShape(final String statement) {
+        final Matcher matcher = VALUES_PATTERN.matcher(statement);
+        if (!matcher.find()) {
+            return null;
+        }
+        final int tupleStart = matcher.end() - 1;
+        int depth = 0;
+        char quote = 0;
+        for (int i = tupleStart; i < statement.length(); i++) {
+            final char c = statement.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                final String tail = statement.substring(i + 1);
+                // 튜플이 여러 개면 이미 여러 row짜리 INSERT이므로 합치지 않는다
+                if (tail.stripLeading().startsWith(",")) {
+                    return null;
+                }
+                return new Shape(statement.substring(0, tupleStart), statement.substring(tupleStart, i + 1), tail);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,13 @@
+package com.simpledb;
+
+import java.util.List;
+
+/**
+ * write-behind 버퍼가 한 번에 쓰지 못한 row들
+ *
+ * @param statement 큐에 넣은 SQL문
+ * @param rows      row마다의 인자값. 이 row들은 다시 시도하지 않는다
+ * @param cause     실패 원인. 실행에 실패하면 SQLException, 인자값을 바인딩하다 실패하는 등의 경우에는 RuntimeException
+ */
+public record WriteBehindFailure(String statement, List<Object[]> rows, Exception cause) {
+}
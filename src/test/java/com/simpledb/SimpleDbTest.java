@@ -1,25 +1,45 @@
 package com.simpledb;
 
 import com.simpledb.Entity.Article;
+import com.simpledb.Entity.ArticleSummary;
 import org.junit.jupiter.api.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @TestMethodOrder(MethodOrderer.MethodName.class)
 public class SimpleDbTest {
     private static SimpleDb simpleDb;
+    private final List<SimpleDb> configuredDbs = new ArrayList<>();
 
     @BeforeAll
     public static void beforeAll() {
@@ -35,6 +55,22 @@ public class SimpleDbTest {
         makeArticleTestData();
     }
 
+    @AfterEach
+    public void afterEach() {
+        configuredDbs.forEach(SimpleDb::shutdown);
+        configuredDbs.clear();
+    }
+
+    /**
+     * 공유하는 simpleDb와 설정이 다른 SimpleDb가 필요한 테스트용. 테스트가 끝나면 shutdown 된다
+     */
+    private SimpleDb newSimpleDb(final Consumer<SimpleDb> configurer) {
+        SimpleDb configuredDb = new SimpleDb("localhost", "root", "lldj123414", "simpleDb__test");
+        configuredDbs.add(configuredDb);
+        configurer.accept(configuredDb);
+        return configuredDb;
+    }
+
     private static void createArticleTable() {
         simpleDb.run("DROP TABLE IF EXISTS article");
 
@@ -534,4 +570,907 @@ public class SimpleDbTest {
 
         assertThat(newCount).isEqualTo(oldCount + 1);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("connection pool, 반납된 커넥션 재사용")
+    void t020() {
+        long connectionId = simpleDb.genSql()
+                .append("SELECT CONNECTION_ID()")
+                .selectLong();
+
+        long reusedConnectionId = simpleDb.genSql()
+                .append("SELECT CONNECTION_ID()")
+                .selectLong();
+
+        assertThat(reusedConnectionId).isEqualTo(connectionId);
+    }
+
+    @Test
+    @DisplayName("다른 스레드는 트랜잭션을 commit 할 수 없음")
+    void t021() throws InterruptedException {
+        long oldCount = simpleDb.genSql()
+                .append("SELECT COUNT(*)")
+                .append("FROM article")
+                .selectLong();
+
+        simpleDb.startTransaction();
+
+        simpleDb.genSql()
+                .append("INSERT INTO article ")
+                .append("(createdDate, modifiedDate, title, body)")
+                .appendIn("VALUES (NOW(), NOW(), ?)", "새 제목", "새 내용")
+                .insert();
+
+        // 다른 스레드의 commit, close는 이 스레드의 트랜잭션에 영향을 주지 않습니다.
+        Thread otherThread = new Thread(() -> {
+            simpleDb.commit();
+            simpleDb.close();
+        });
+        otherThread.start();
+        otherThread.join();
+
+        simpleDb.rollback();
+
+        long newCount = simpleDb.genSql()
+                .append("SELECT COUNT(*)")
+                .append("FROM article")
+                .selectLong();
+
+        assertThat(newCount).isEqualTo(oldCount);
+    }
+
+    @Test
+    @DisplayName("statement cache, 같은 SQL문은 한 번만 prepare")
+    void t022() {
+        SimpleDb cachedDb = newSimpleDb(db -> {
+            db.setServerPreparedStatements(true);
+            db.setPoolSize(0, 1);
+        });
+
+        String prepareCountSql = "SELECT VARIABLE_VALUE FROM performance_schema.session_status WHERE VARIABLE_NAME = 'Com_stmt_prepare'";
+        long oldPrepareCount = cachedDb.genSql().append(prepareCountSql).selectLong();
+
+        IntStream.rangeClosed(1, 3).forEach(id -> cachedDb.genSql()
+                .append("SELECT title FROM article WHERE id = ?", id)
+                .selectString());
+
+        long newPrepareCount = cachedDb.genSql().append(prepareCountSql).selectLong();
+
+        assertThat(newPrepareCount - oldPrepareCount).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("stream")
+    void t023() {
+        Sql sql = simpleDb.genSql();
+        /*
+        == rawSql ==
+        SELECT *
+        FROM article
+        ORDER BY id ASC
+        */
+        sql.append("SELECT * FROM article ORDER BY id ASC");
+
+        List<Long> ids;
+        try (Stream<Article> articles = sql.stream(Article.class)) {
+            ids = articles.map(Article::getId).toList();
+        }
+
+        assertThat(ids).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+    }
+
+    @Test
+    @DisplayName("runBatch")
+    void t024() {
+        List<Object[]> batchParams = IntStream.rangeClosed(1, 5)
+                .mapToObj(no -> new Object[]{"배치 제목%d".formatted(no), "배치 내용%d".formatted(no)})
+                .toList();
+
+        long[] newIds = simpleDb.runBatch("""
+                INSERT INTO article (createdDate, modifiedDate, title, `body`)
+                VALUES (NOW(), NOW(), ?, ?)
+                """, batchParams);
+
+        long count = simpleDb.genSql()
+                .append("SELECT COUNT(*)")
+                .append("FROM article")
+                .selectLong();
+
+        assertThat(newIds).containsExactly(7L, 8L, 9L, 10L, 11L);
+        assertThat(count).isEqualTo(11);
+    }
+
+    @Test
+    @DisplayName("selectLongColumn")
+    void t025() {
+        Sql sql = simpleDb.genSql();
+        /*
+        == rawSql ==
+        SELECT id
+        FROM article
+        ORDER BY id ASC
+        */
+        sql.append("SELECT id")
+                .append("FROM article")
+                .append("ORDER BY id ASC");
+
+        LongColumn ids = sql.selectLongColumn();
+
+        assertThat(ids.toArray()).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+    }
+
+    @Test
+    @DisplayName("selectColumns")
+    void t026() {
+        Sql sql = simpleDb.genSql();
+        /*
+        == rawSql ==
+        SELECT id, title, isBlind
+        FROM article
+        ORDER BY id ASC
+        */
+        sql.append("SELECT id, title, isBlind")
+                .append("FROM article")
+                .append("ORDER BY id ASC");
+
+        ColumnarResult columns = sql.selectColumns();
+
+        assertThat(columns.getRowCount()).isEqualTo(6);
+        assertThat(columns.getLongColumn("id").get(0)).isEqualTo(1L);
+        assertThat(columns.getColumn("title").getObject(0)).isEqualTo("제목1");
+        assertThat(columns.getBooleanColumn("isBlind").toArray())
+                .containsExactly(false, false, false, true, true, true);
+    }
+
+    @Test
+    @DisplayName("selectRowAsync")
+    void t027() {
+        List<CompletableFuture<Article>> futures = IntStream.rangeClosed(1, 6)
+                .mapToObj(id -> simpleDb.genSql()
+                        .append("SELECT * FROM article WHERE id = ?", id)
+                        .selectRowAsync(Article.class))
+                .toList();
+
+        List<String> titles = futures.stream()
+                .map(CompletableFuture::join)
+                .map(Article::getTitle)
+                .toList();
+
+        assertThat(titles).containsExactly("제목1", "제목2", "제목3", "제목4", "제목5", "제목6");
+    }
+
+    @Test
+    @DisplayName("query cache, 테이블 쓰기 시 무효화")
+    void t028() {
+        SimpleDb cachedDb = newSimpleDb(db -> db.enableQueryCache(100, Duration.ofMinutes(1)));
+
+        Article article = cachedDb.genSql()
+                .append("SELECT * FROM article WHERE id = ?", 1)
+                .selectRow(Article.class);
+        Article cachedArticle = cachedDb.genSql()
+                .append("SELECT * FROM article WHERE id = ?", 1)
+                .selectRow(Article.class);
+
+        cachedDb.genSql()
+                .append("UPDATE article")
+                .append("SET title = ?", "제목 new")
+                .append("WHERE id = ?", 1)
+                .update();
+
+        Article updatedArticle = cachedDb.genSql()
+                .append("SELECT * FROM article WHERE id = ?", 1)
+                .selectRow(Article.class);
+
+        QueryCacheStats stats = cachedDb.getQueryCacheStats();
+
+        assertThat(cachedArticle.getTitle()).isEqualTo(article.getTitle());
+        assertThat(updatedArticle.getTitle()).isEqualTo("제목 new");
+        assertThat(stats.hits()).isEqualTo(1);
+        assertThat(stats.misses()).isEqualTo(2);
+        assertThat(stats.invalidations()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("metrics, SQL문 종류별 실행 횟수와 SQLState별 실패 횟수")
+    void t029() {
+        SqlMetrics metrics = simpleDb.getMetrics();
+        long oldSelectCount = metrics.getLatency(StatementType.SELECT).count();
+        long oldUpdateCount = metrics.getLatency(StatementType.UPDATE).count();
+        long oldRowsReturned = metrics.getRowsReturned();
+        long oldRowsMapped = metrics.getRowsMapped();
+        long oldAcquireCount = metrics.getConnectionAcquireLatency().count();
+        long oldErrorCount = metrics.getErrorCounts().getOrDefault("42S02", 0L);
+
+        List<Article> articles = simpleDb.genSql()
+                .append("SELECT * FROM article ORDER BY id ASC")
+                .selectRows(Article.class);
+        simpleDb.genSql()
+                .append("UPDATE article")
+                .append("SET title = ?", "제목 new")
+                .append("WHERE id = ?", 1)
+                .update();
+        simpleDb.genSql()
+                .append("SELECT * FROM no_such_table")
+                .selectRows();
+
+        HistogramSnapshot selectLatency = metrics.getLatency(StatementType.SELECT);
+
+        assertThat(articles).hasSize(6);
+        assertThat(selectLatency.count() - oldSelectCount).isEqualTo(1);
+        assertThat(metrics.getLatency(StatementType.UPDATE).count() - oldUpdateCount).isEqualTo(1);
+        assertThat(metrics.getRowsReturned() - oldRowsReturned).isEqualTo(6);
+        assertThat(metrics.getRowsMapped() - oldRowsMapped).isEqualTo(6);
+        assertThat(metrics.getConnectionAcquireLatency().count() - oldAcquireCount).isEqualTo(3);
+        assertThat(metrics.getErrorCounts().get("42S02") - oldErrorCount).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("slow query log, 인자값과 EXPLAIN 기록")
+    void t030() {
+        SimpleDb slowDb = newSimpleDb(db -> db.enableSlowQueryLog(Duration.ZERO, Duration.ofMinutes(1)));
+        List<String> messages = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger(SlowQueryLog.class.getName());
+        logger.addHandler(handler);
+
+        try {
+            slowDb.genSql()
+                    .append("SELECT * FROM article WHERE id = ?", 1)
+                    .selectRow(Article.class);
+            slowDb.genSql()
+                    .append("SELECT * FROM article WHERE id = ?", 2)
+                    .selectRow(Article.class);
+        } finally {
+            logger.removeHandler(handler);
+        }
+
+        assertThat(messages).hasSize(2);
+        assertThat(messages.get(0)).contains("SELECT * FROM article WHERE id = ?", "[1]", "1 rows", "EXPLAIN");
+        // EXPLAIN은 explainInterval 마다 한 번만 실행된다
+        assertThat(messages.get(1)).contains("[2]").doesNotContain("EXPLAIN");
+    }
+
+    @Test
+    @DisplayName("appendBulkIn, IN 목록을 나눠 실행하고 결과 합치기")
+    void t031() {
+        List<Long> ids = List.of(1L, 2L, 3L, 4L, 5L);
+
+        List<Long> foundIds = simpleDb.genSql()
+                .append("SELECT id FROM article")
+                .appendBulkIn("WHERE id IN (?)", ids)
+                .append("ORDER BY id ASC")
+                .bulkInChunkSize(2)
+                .selectLongs();
+
+        int deletedCount = simpleDb.genSql()
+                .append("DELETE FROM article")
+                .appendBulkIn("WHERE id IN (?)", ids)
+                .append("AND isBlind = ?", false)
+                .bulkInChunkSize(2)
+                .delete();
+
+        assertThat(foundIds).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(deletedCount).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("selectRowsParallel, 키 범위로 나눠 동시에 조회")
+    void t032() {
+        List<Article> articles = simpleDb.genSql()
+                .append("SELECT * FROM article")
+                .append("WHERE isBlind = ?", false)
+                .selectRowsParallel(Article.class, "id", 2);
+
+        List<Long> ids;
+        try (Stream<Article> stream = simpleDb.genSql()
+                .append("SELECT * FROM article")
+                .partitionSize(2)
+                .streamParallel(Article.class, "id", 2)) {
+            ids = stream.map(Article::getId).toList();
+        }
+
+        assertThat(articles).extracting(Article::getId).containsExactly(1L, 2L, 3L);
+        assertThat(ids).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+    }
+
+    @Test
+    @DisplayName("replica, 트랜잭션 밖의 SELECT는 복제 서버에서, 쓰기와 fromPrimary는 주 서버에서 실행")
+    void t033() {
+        simpleDb.run("CREATE DATABASE IF NOT EXISTS simpleDb__test_replica");
+        simpleDb.run("DROP TABLE IF EXISTS simpleDb__test_replica.article");
+        simpleDb.run("CREATE TABLE simpleDb__test_replica.article LIKE article");
+        simpleDb.run("""
+                INSERT INTO simpleDb__test_replica.article
+                SET createdDate = NOW(),
+                modifiedDate = NOW(),
+                title = ?,
+                `body` = ?
+                """, "복제 제목", "복제 내용");
+
+        SimpleDb routedDb = newSimpleDb(db -> db.addReplica("localhost", "simpleDb__test_replica"));
+
+        long replicaCount = routedDb.genSql()
+                .append("SELECT COUNT(*) FROM article")
+                .selectLong();
+        routedDb.genSql()
+                .append("UPDATE article")
+                .append("SET title = ?", "제목 new")
+                .append("WHERE id = ?", 1)
+                .update();
+        String primaryTitle = routedDb.genSql()
+                .append("SELECT title FROM article WHERE id = ?", 1)
+                .fromPrimary()
+                .selectString();
+        routedDb.startTransaction();
+        long transactionCount = routedDb.genSql()
+                .append("SELECT COUNT(*) FROM article")
+                .selectLong();
+        routedDb.rollback();
+
+        assertThat(replicaCount).isEqualTo(1);
+        assertThat(primaryTitle).isEqualTo("제목 new");
+        assertThat(transactionCount).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("SqlTemplate, 이름 있는 인자를 타입별 setter로 바인딩")
+    void t034() {
+        SqlTemplate template = SqlTemplate.of("""
+                SELECT * FROM article
+                WHERE id BETWEEN :minId AND :maxId
+                AND isBlind = :isBlind
+                AND title != ':minId'
+                ORDER BY id ASC
+                """);
+
+        List<Article> articles = simpleDb.genSql(template)
+                .setLong("minId", 2)
+                .setLong("maxId", 5)
+                .setBoolean("isBlind", false)
+                .selectRows(Article.class);
+        List<Article> blindArticles = simpleDb.genSql(template)
+                .setLong("minId", 2)
+                .setLong("maxId", 5)
+                .setBoolean("isBlind", true)
+                .selectRows(Article.class);
+
+        assertThat(template.parameterNames()).containsExactly("minId", "maxId", "isBlind");
+        assertThat(articles).extracting(Article::getId).containsExactly(2L, 3L);
+        assertThat(blindArticles).extracting(Article::getId).containsExactly(4L, 5L);
+    }
+
+    @Test
+    @DisplayName("save, saveAll, update(entity), 바뀐 컬럼만 UPDATE")
+    void t035() {
+        SimpleDb entityDb = newSimpleDb(db -> db.setDirtyChecking(true));
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        Article newArticle = new Article()
+                .setTitle("새 제목")
+                .setBody("새 내용")
+                .setCreatedDate(now)
+                .setModifiedDate(now);
+        long newId = entityDb.save(newArticle);
+
+        long[] savedIds = entityDb.saveAll(List.of(
+                new Article().setTitle("제목8").setBody("내용8").setCreatedDate(now).setModifiedDate(now),
+                new Article().setTitle("제목9").setBody("내용9").setCreatedDate(now).setModifiedDate(now)));
+
+        Article article = entityDb.genSql()
+                .append("SELECT * FROM article WHERE id = ?", 1)
+                .selectRow(Article.class);
+        int unchangedCount = entityDb.update(article);
+        article.setTitle("제목 new");
+        int updatedCount = entityDb.update(article);
+
+        String title = entityDb.genSql()
+                .append("SELECT title FROM article WHERE id = ?", 1)
+                .selectString();
+
+        assertThat(newId).isEqualTo(7);
+        assertThat(newArticle.getId()).isEqualTo(7L);
+        assertThat(savedIds).containsExactly(8, 9);
+        assertThat(unchangedCount).isEqualTo(0);
+        assertThat(updatedCount).isEqualTo(1);
+        assertThat(title).isEqualTo("제목 new");
+    }
+
+    @Test
+    @DisplayName("write-behind, 같은 모양의 INSERT를 여러 row짜리 INSERT로 합쳐 쓰기")
+    void t036() {
+        List<WriteBehindFailure> failures = new CopyOnWriteArrayList<>();
+        SimpleDb bufferedDb = newSimpleDb(db -> db.enableWriteBehind(100, 10, Duration.ofSeconds(10), failures::add));
+
+        IntStream.rangeClosed(7, 9).forEach(no -> bufferedDb.runBehind("""
+                INSERT INTO article (createdDate, modifiedDate, title, `body`)
+                VALUES (NOW(), NOW(), ?, ?)
+                """, "제목%d".formatted(no), "내용%d".formatted(no)));
+        bufferedDb.tryRunBehind("INSERT INTO no_such_table (title) VALUES (?)", "제목");
+        bufferedDb.tryRunBehind("INSERT INTO no_such_table (title) VALUES (?)", "제목");
+        bufferedDb.flushWriteBehind();
+
+        long count = bufferedDb.genSql()
+                .append("SELECT COUNT(*) FROM article")
+                .selectLong();
+        long insertCount = bufferedDb.getMetrics().getLatency(StatementType.INSERT).count();
+
+        assertThat(count).isEqualTo(9);
+        assertThat(insertCount).isEqualTo(1);
+        assertThat(failures).hasSize(1);
+        assertThat(failures.get(0).rows()).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("paginate, 정렬 키의 마지막 값 다음부터 페이지 조회")
+    void t037() {
+        List<List<Long>> pages = simpleDb.genSql()
+                .append("SELECT * FROM article")
+                .paginate(Article.class, 4, "id")
+                .stream()
+                .map(page -> page.stream().map(Article::getId).toList())
+                .toList();
+
+        List<List<Long>> descendingPages = simpleDb.genSql()
+                .append("SELECT id, isBlind FROM article")
+                .paginate(2, "isBlind DESC, id")
+                .stream()
+                .map(page -> page.stream().map(row -> (Long) row.get("id")).toList())
+                .toList();
+
+        assertThat(pages).containsExactly(List.of(1L, 2L, 3L, 4L), List.of(5L, 6L));
+        assertThat(descendingPages).containsExactly(List.of(4L, 5L), List.of(6L, 1L), List.of(2L, 3L));
+    }
+
+    @Test
+    @DisplayName("selectTo, selectStream, 큰 TEXT 컬럼을 stream으로 쓰고 읽기")
+    void t038() throws IOException {
+        String body = "내용".repeat(10_000);
+        simpleDb.genSql()
+                .append("UPDATE article")
+                .append("SET `body` = ?", new StringReader(body))
+                .append("WHERE id = ?", 1)
+                .update();
+
+        Path file = Files.createTempFile("article-body", ".txt");
+        long writtenBytes = simpleDb.genSql()
+                .append("SELECT `body` FROM article WHERE id = ?", 1)
+                .selectTo("body", file);
+
+        StringWriter writer = new StringWriter();
+        long writtenChars = simpleDb.genSql()
+                .append("SELECT `body` FROM article WHERE id = ?", 1)
+                .selectTo("body", writer);
+
+        byte[] streamed;
+        try (InputStream in = simpleDb.genSql()
+                .append("SELECT `body` FROM article WHERE id = ?", 1)
+                .selectStream("body")) {
+            streamed = in.readAllBytes();
+        }
+
+        assertThat(Files.readString(file)).isEqualTo(body);
+        assertThat(writtenBytes).isEqualTo(body.getBytes(StandardCharsets.UTF_8).length);
+        assertThat(writer.toString()).isEqualTo(body);
+        assertThat(writtenChars).isEqualTo(body.length());
+        assertThat(new String(streamed, StandardCharsets.UTF_8)).isEqualTo(body);
+        Files.delete(file);
+    }
+
+    @Test
+    @DisplayName("exportJson, exportCsv")
+    void t039() {
+        simpleDb.genSql()
+                .append("UPDATE article")
+                .append("SET title = ?", "제목, \"인용\"")
+                .append("WHERE id = ?", 2)
+                .update();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long jsonRows = simpleDb.genSql()
+                .append("SELECT id, title, isBlind, createdDate FROM article")
+                .append("WHERE id IN (?, ?)", 1, 4)
+                .append("ORDER BY id")
+                .exportJson(out);
+
+        StringWriter writer = new StringWriter();
+        long csvRows = simpleDb.genSql()
+                .append("SELECT id, title, isBlind FROM article")
+                .append("WHERE id <= ?", 2)
+                .append("ORDER BY id")
+                .exportCsv(writer);
+
+        String json = out.toString(StandardCharsets.UTF_8);
+        assertThat(jsonRows).isEqualTo(2);
+        assertThat(json).startsWith("[{\"id\":1,\"title\":\"제목1\",\"isBlind\":false,\"createdDate\":\"");
+        assertThat(json).contains("{\"id\":4,\"title\":\"제목4\",\"isBlind\":true,");
+        assertThat(json).matches(".*\"createdDate\":\"\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\".*");
+        assertThat(csvRows).isEqualTo(2);
+        assertThat(writer.toString()).isEqualTo("id,title,isBlind\r\n1,제목1,false\r\n2,\"제목, \"\"인용\"\"\",false\r\n");
+    }
+
+    @Test
+    @DisplayName("appendSelect, selectRows(record)")
+    void t040() {
+        List<ArticleSummary> summaries = simpleDb.genSql()
+                .appendSelect(ArticleSummary.class)
+                .append("FROM article")
+                .append("WHERE id IN (?, ?)", 3, 4)
+                .append("ORDER BY id")
+                .selectRows(ArticleSummary.class);
+
+        ArticleSummary partial = simpleDb.genSql()
+                .append("SELECT id FROM article WHERE id = ?", 1)
+                .selectRow(ArticleSummary.class);
+
+        assertThat(summaries).containsExactly(
+                new ArticleSummary(3, "제목3", false),
+                new ArticleSummary(4, "제목4", true));
+        assertThat(partial).isEqualTo(new ArticleSummary(1, null, false));
+    }
+
+    @Test
+    @DisplayName("inTransaction, savepoint")
+    void t041() {
+        long committedId = simpleDb.inTransaction(tx -> {
+            long id = tx.genSql()
+                    .append("INSERT INTO article")
+                    .append("SET createdDate = NOW(), modifiedDate = NOW(), title = ?, `body` = ?", "바깥", "내용")
+                    .insert();
+            try {
+                tx.runInTransaction(nested -> {
+                    nested.run("INSERT INTO article SET createdDate = NOW(), modifiedDate = NOW(), title = ?, `body` = ?", "안쪽", "내용");
+                    throw new IllegalStateException("안쪽 실패");
+                });
+            } catch (IllegalStateException ignored) {
+                // savepoint까지만 롤백되고 바깥 트랜잭션은 계속된다
+            }
+            return id;
+        });
+
+        assertThatThrownBy(() -> simpleDb.runInTransaction(IsolationLevel.READ_COMMITTED, tx -> {
+            tx.run("INSERT INTO article SET createdDate = NOW(), modifiedDate = NOW(), title = ?, `body` = ?", "롤백", "내용");
+            tx.run("INSERT INTO no_such_table SET id = 1");
+        })).isInstanceOf(SqlExecutionException.class);
+
+        List<Object> titles = simpleDb.genSql()
+                .append("SELECT title FROM article WHERE id > ?", 6)
+                .selectRows()
+                .stream()
+                .map(row -> row.get("title"))
+                .toList();
+
+        assertThat(committedId).isEqualTo(7);
+        assertThat(titles).containsExactly("바깥");
+    }
+
+    @Test
+    @DisplayName("inTransaction, 교착 상태 재시도")
+    void t042() throws InterruptedException {
+        simpleDb.setTransactionRetry(3, Duration.ofMillis(10));
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch bothLocked = new CountDownLatch(2);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+        List<CompletableFuture<Void>> futures = Stream.of(new long[]{1, 2}, new long[]{2, 1})
+                .map(order -> CompletableFuture.runAsync(() -> {
+                    simpleDb.runInTransaction(tx -> {
+                        attempts.incrementAndGet();
+                        tx.run("UPDATE article SET title = ? WHERE id = ?", "잠금", order[0]);
+                        bothLocked.countDown();
+                        try {
+                            bothLocked.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        tx.run("UPDATE article SET title = ? WHERE id = ?", "교착", order[1]);
+                    });
+                    simpleDb.close();
+                }, executorService))
+                .toList();
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        executorService.shutdown();
+        executorService.awaitTermination(10, TimeUnit.SECONDS);
+
+        long updatedCount = simpleDb.genSql()
+                .append("SELECT COUNT(*) FROM article WHERE title = ?", "교착")
+                .selectLong();
+
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(updatedCount).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("pipeline")
+    void t043() {
+        SimpleDb pipelinedDb = newSimpleDb(db -> db.setMultiStatements(true));
+
+        Pipeline pipeline = pipelinedDb.pipeline();
+        CompletableFuture<Long> count = pipeline.selectLong(pipelinedDb.genSql()
+                .append("SELECT COUNT(*) FROM article WHERE isBlind = ?", false));
+        CompletableFuture<List<Article>> articles = pipeline.selectRows(pipelinedDb.genSql()
+                .append("SELECT * FROM article WHERE id IN (?, ?) ORDER BY id", 1, 2), Article.class);
+        CompletableFuture<Long> failed = pipeline.selectLong(pipelinedDb.genSql()
+                .append("SELECT COUNT(*) FROM no_such_table"));
+        CompletableFuture<String> title = pipeline.selectString(pipelinedDb.genSql()
+                .append("SELECT title FROM article WHERE id = ?", 6));
+        pipeline.execute();
+
+        assertThat(count.join()).isEqualTo(3);
+        assertThat(articles.join()).extracting(Article::getTitle).containsExactly("제목1", "제목2");
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(title.join()).isEqualTo("제목6");
+    }
+
+    @Test
+    @DisplayName("selectRow 결과 Map에 컬럼 추가, 삭제")
+    void t044() {
+        Map<String, Object> articleMap = simpleDb.genSql()
+                .append("SELECT id, title FROM article WHERE id = ?", 1)
+                .selectRow();
+        Map<String, Object> emptyMap = simpleDb.genSql()
+                .append("SELECT id, title FROM article WHERE id = ?", 100)
+                .selectRow();
+
+        articleMap.put("commentCount", 3);
+        articleMap.remove("id");
+        emptyMap.put("id", 100L);
+
+        assertThat(articleMap).containsExactly(Map.entry("title", "제목1"), Map.entry("commentCount", 3));
+        assertThat(emptyMap).isInstanceOf(Row.class).containsEntry("id", 100L);
+    }
+
+    @Test
+    @DisplayName("query cache, 별칭이 붙은 쉼표 조인도 각 테이블 쓰기 시 무효화")
+    void t045() {
+        simpleDb.run("DROP TABLE IF EXISTS comment");
+        simpleDb.run("""
+                CREATE TABLE comment (
+                    id INT UNSIGNED NOT NULL AUTO_INCREMENT,
+                    PRIMARY KEY(id),
+                    articleId INT UNSIGNED NOT NULL,
+                    `body` VARCHAR(100) NOT NULL
+                )
+                """);
+        SimpleDb cachedDb = newSimpleDb(db -> db.enableQueryCache(100, Duration.ofMinutes(1)));
+
+        long before = cachedDb.genSql()
+                .append("SELECT COUNT(*) FROM article a, comment c")
+                .append("WHERE a.id = c.articleId AND a.id = ?", 1)
+                .selectLong();
+        cachedDb.run("INSERT INTO comment SET articleId = ?, `body` = ?", 1, "댓글1");
+        long after = cachedDb.genSql()
+                .append("SELECT COUNT(*) FROM article a, comment c")
+                .append("WHERE a.id = c.articleId AND a.id = ?", 1)
+                .selectLong();
+
+        simpleDb.run("DROP TABLE comment");
+
+        assertThat(before).isEqualTo(0);
+        assertThat(after).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("bulk IN selectRowsAsync를 커넥션 풀 크기만큼 동시에 실행")
+    void t046() {
+        List<Long> ids = List.of(1L, 2L, 3L, 4L, 5L, 6L);
+
+        List<CompletableFuture<List<Map<String, Object>>>> futures = IntStream.range(0, 10)
+                .mapToObj(i -> simpleDb.genSql()
+                        .append("SELECT id FROM article")
+                        .appendBulkIn("WHERE id IN (?)", ids)
+                        .bulkInChunkSize(2)
+                        .selectRowsAsync()
+                        .orTimeout(10, TimeUnit.SECONDS))
+                .toList();
+
+        List<Integer> sizes = futures.stream()
+                .map(CompletableFuture::join)
+                .map(List::size)
+                .toList();
+
+        assertThat(sizes).hasSize(10).containsOnly(6);
+    }
+
+    @Test
+    @DisplayName("selectRowsParallel, 조회 결과가 없으면 빈 list")
+    void t047() {
+        List<Article> articles = simpleDb.genSql()
+                .append("SELECT * FROM article")
+                .append("WHERE id > ?", 100)
+                .selectRowsParallel(Article.class, "id", 4);
+
+        long streamedCount;
+        try (Stream<Article> stream = simpleDb.genSql()
+                .append("SELECT * FROM article")
+                .append("WHERE id > ?", 100)
+                .streamParallel(Article.class, "id", 4)) {
+            streamedCount = stream.count();
+        }
+
+        assertThat(articles).isEmpty();
+        assertThat(streamedCount).isZero();
+    }
+
+    @Test
+    @DisplayName("SqlTemplate, 주석 안의 이름은 인자가 아니고 한 줄 주석 뒤에 append 가능")
+    void t048() {
+        SqlTemplate template = SqlTemplate.of("""
+                SELECT COUNT(*) FROM article /* :ignored */
+                WHERE id <= :maxId -- :minId 는 아래에서 append
+                # :isBlind
+                AND isBlind = :isBlind -- :ignored""");
+
+        Long count = simpleDb.genSql(template)
+                .setLong("maxId", 5)
+                .setBoolean("isBlind", false)
+                .append("AND id >= ?", 2)
+                .selectLong();
+
+        assertThat(template.parameterNames()).containsExactly("maxId", "isBlind");
+        assertThat(count).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("save, 기본 타입 주키가 0이면 생성된 주키를 넣음")
+    void t049() {
+        simpleDb.run("DROP TABLE IF EXISTS memo");
+        simpleDb.run("""
+                CREATE TABLE memo (
+                    id INT UNSIGNED NOT NULL AUTO_INCREMENT,
+                    PRIMARY KEY(id),
+                    content VARCHAR(100) NOT NULL
+                )
+                """);
+
+        Memo memo = new Memo().setContent("메모1");
+        long generatedId = simpleDb.save(memo);
+        Memo memoWithId = new Memo().setId(10).setContent("메모10");
+        long generatedIdWithId = simpleDb.save(memoWithId);
+        List<Long> ids = simpleDb.genSql()
+                .append("SELECT id FROM memo ORDER BY id")
+                .selectLongs();
+
+        simpleDb.run("DROP TABLE memo");
+
+        assertThat(generatedId).isEqualTo(1);
+        assertThat(memo.getId()).isEqualTo(1);
+        assertThat(generatedIdWithId).isZero();
+        assertThat(ids).containsExactly(1L, 10L);
+    }
+
+    @Test
+    @DisplayName("write-behind, 쓰다가 RuntimeException이 나도 실패를 알리고 flush가 끝남")
+    void t050() {
+        List<WriteBehindFailure> failures = new CopyOnWriteArrayList<>();
+        SimpleDb bufferedDb = newSimpleDb(db -> db.enableWriteBehind(100, 10, Duration.ofSeconds(10), failures::add));
+
+        bufferedDb.runBehind("INSERT INTO article (title) VALUES (?)", (Object[]) null);
+        CompletableFuture.runAsync(bufferedDb::flushWriteBehind)
+                .orTimeout(10, TimeUnit.SECONDS)
+                .join();
+        bufferedDb.runBehind("""
+                INSERT INTO article (createdDate, modifiedDate, title, `body`)
+                VALUES (NOW(), NOW(), ?, ?)
+                """, "제목7", "내용7");
+        CompletableFuture.runAsync(bufferedDb::flushWriteBehind)
+                .orTimeout(10, TimeUnit.SECONDS)
+                .join();
+
+        long count = bufferedDb.genSql()
+                .append("SELECT COUNT(*) FROM article")
+                .selectLong();
+
+        assertThat(failures).hasSize(1);
+        assertThat(failures.get(0).cause()).isInstanceOf(NullPointerException.class);
+        assertThat(count).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("query cache, selectString, selectDatetime, 컬럼 조회도 캐시하고 쓰기 시 무효화")
+    void t051() {
+        SimpleDb cachedDb = newSimpleDb(db -> db.enableQueryCache(100, Duration.ofMinutes(1)));
+
+        String title = cachedDb.genSql()
+                .append("SELECT title FROM article WHERE id = ?", 1)
+                .selectString();
+        LocalDateTime createdDate = cachedDb.genSql()
+                .append("SELECT createdDate FROM article WHERE id = ?", 1)
+                .selectDatetime();
+        LongColumn ids = cachedDb.genSql()
+                .append("SELECT id FROM article ORDER BY id")
+                .selectLongColumn();
+        ids.add(100L);
+        ColumnarResult columns = cachedDb.genSql()
+                .append("SELECT id, title FROM article ORDER BY id")
+                .selectColumns();
+        String cachedTitle = cachedDb.genSql()
+                .append("SELECT title FROM article WHERE id = ?", 1)
+                .selectString();
+        LocalDateTime cachedCreatedDate = cachedDb.genSql()
+                .append("SELECT createdDate FROM article WHERE id = ?", 1)
+                .selectDatetime();
+        LongColumn cachedIds = cachedDb.genSql()
+                .append("SELECT id FROM article ORDER BY id")
+                .selectLongColumn();
+        ColumnarResult cachedColumns = cachedDb.genSql()
+                .append("SELECT id, title FROM article ORDER BY id")
+                .selectColumns();
+        long hits = cachedDb.getQueryCacheStats().hits();
+
+        cachedDb.genSql()
+                .append("UPDATE article")
+                .append("SET title = ?", "제목 new")
+                .append("WHERE id = ?", 1)
+                .update();
+        String updatedTitle = cachedDb.genSql()
+                .append("SELECT title FROM article WHERE id = ?", 1)
+                .selectString();
+
+        assertThat(cachedTitle).isEqualTo(title).isEqualTo("제목1");
+        assertThat(cachedCreatedDate).isEqualTo(createdDate);
+        assertThat(cachedIds.toArray()).containsExactly(1, 2, 3, 4, 5, 6);
+        assertThat(cachedColumns.getRowCount()).isEqualTo(columns.getRowCount()).isEqualTo(6);
+        assertThat(hits).isEqualTo(4);
+        assertThat(updatedTitle).isEqualTo("제목 new");
+    }
+
+    @Test
+    @DisplayName("selectRowsParallel, long 양 끝에 걸친 키 범위도 나눠 조회하고 stream을 일찍 닫아도 됨")
+    void t052() {
+        String keys = """
+                SELECT -9223372036854775807 - 1 AS id, 'min' AS content
+                UNION ALL SELECT 0, 'zero'
+                UNION ALL SELECT 9223372036854775807, 'max'
+                """;
+        List<Memo> memos = simpleDb.genSql()
+                .append(keys)
+                .selectRowsParallel(Memo.class, "id", 4);
+
+        String first;
+        try (Stream<Memo> stream = simpleDb.genSql()
+                .append(keys)
+                .streamParallel(Memo.class, "id", 1)) {
+            first = stream.findFirst().map(Memo::getContent).orElseThrow();
+        }
+
+        assertThat(memos).extracting(Memo::getContent).containsExactly("min", "zero", "max");
+        assertThat(first).isEqualTo("min");
+    }
+
+    public static class Memo {
+        private long id;
+        private String content;
+
+        public long getId() {
+            return id;
+        }
+
+        public Memo setId(final long id) {
+            this.id = id;
+            return this;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public Memo setContent(final String content) {
+            this.content = content;
+            return this;
+        }
+    }
+}